@@ -11,46 +11,158 @@ import java.io.*;
  */
 public class AMCATSimulator {
 
+    /**
+     * One generated item, about 40 bytes: the prompt, options and answer text
+     * are not stored but rendered on demand from a shared QuestionTemplate
+     */
     static class Question {
-        int id;
-        int difficulty;
-        String prompt;
-        String[] options;
-        String answer;
-
-        Question(int id, int difficulty, String prompt, String[] options, String answer) {
+        final int id;
+        final byte difficulty;
+        final byte type; // generator case 0-9 within the difficulty tier
+        final QuestionTemplate template;
+        final long params; // template parameters, see QuestionTemplate.pack()
+        final long canonicalAnswer; // AnswerForm of the answer, so "4, 6" matches "4,6" and "2/8" matches "1/4"
+
+        Question(int id, QuestionTemplate template, long params, long canonicalAnswer) {
             this.id = id;
-            this.difficulty = difficulty;
-            this.prompt = prompt;
-            this.options = options;
-            this.answer = answer.trim().toLowerCase();
+            this.difficulty = (byte)template.difficulty;
+            this.type = (byte)template.type;
+            this.template = template;
+            this.params = params;
+            this.canonicalAnswer = canonicalAnswer;
+        }
+
+        /** Hash of (template, parameters); equal questions share it, used for dedup. */
+        long fingerprint() {
+            return QuestionGenerator.mix64(params * 0x9E3779B97F4A7C15L + template.id);
         }
 
         void display() {
-            System.out.println(prompt);
+            try {
+                render(System.out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // PrintStream never throws
+            }
+        }
+
+        /** Writes the prompt and lettered options, one per line, to any text sink. */
+        void render(Appendable out) throws IOException {
+            template.render(params, out);
+            out.append('\n');
+            String[] options = options();
             if (options != null) {
                 for (int i = 0; i < options.length; i++) {
-                    System.out.printf("  %c) %s\n", 'A' + i, options[i]);
+                    out.append("  ").append((char)('A' + i)).append(") ").append(options[i]).append('\n');
                 }
             }
         }
 
+        /** Prompt text; allocates, so only for exports and diagnostics. */
+        String prompt() {
+            StringBuilder sb = new StringBuilder(96);
+            try {
+                template.render(params, sb);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // StringBuilder never throws
+            }
+            return sb.toString();
+        }
+
+        /** Shared option table (do not modify), or null for a free-answer question. */
+        String[] options() {
+            return template.options(params);
+        }
+
+        /** Expected answer in display form, e.g. "42", "1/4", "4,6", "a", "97.5". */
+        String answer() {
+            return template.answer(params, canonicalAnswer);
+        }
+
         boolean check(String userAns) {
             if (userAns == null) return false;
-            return userAns.trim().toLowerCase().equals(answer);
+            return AnswerForm.parse(userAns) == canonicalAnswer;
         }
     }
 
-    private final Random rand = new Random();
-    private final Scanner scanner = new Scanner(System.in);
-    private final List<String> scoreHistory = new ArrayList<>();
-    private final String SCORE_FILE = "scores.txt";
-    private int questionIdCounter = 1000;
+    private InputPump input; // started lazily so headless users never touch stdin
+    private ScoreStore scores;
+    private ScoreStats stats; // built from the store on first view, then kept current
+    String scoreFile = "scores.dat"; // overridable for benchmarks
+    String legacyScoreFile = "scores.txt"; // old text history, imported once
+    String journalFile = "exams.journal"; // write-ahead log of exams in progress
+    private ExamJournal journal;
+    String profileFile = "profiles.dat"; // per-candidate level, topic accuracy and recent scores
+    int profileCacheSize = 10_000;
+    private CandidateProfileStore profiles;
+    ResponseLog.Writer responses; // per-question export (--responses), may be null
+    private final long masterSeed;
+    private final QuestionSource practiceSource;
+    // everything served in this run, so consecutive exams avoid each other's items
+    private final DedupQuestionSource.CohortFilter cohort = new DedupQuestionSource.CohortFilter(1 << 16);
+    private int examCounter = 0;
+    private QuestionBank bank; // optional pre-built bank (--bank)
+    private ItemPool itemPool; // IRT item selection over the bank (--irt)
+
+    AMCATSimulator(long masterSeed) {
+        this.masterSeed = masterSeed;
+        this.practiceSource = new DedupQuestionSource(QuestionGenerator.forSession(masterSeed, "practice"), null);
+    }
+
+    private static void usage() {
+        System.out.println("Usage: java AMCATSimulator [--seed N] [--bank FILE] [--irt] [--metrics FILE] [--responses FILE]");
+    }
 
-    public static void main(String[] args) {
-        AMCATSimulator app = new AMCATSimulator();
+    public static void main(String[] args) throws IOException {
+        long seed = System.nanoTime();
+        String bankFile = null;
+        boolean irt = false;
+        String metricsFile = null;
+        String responsesFile = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--irt")) {
+                    irt = true;
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    usage();
+                    return;
+                }
+                switch (args[i]) {
+                    case "--seed": seed = Long.parseLong(args[++i]); break;
+                    case "--bank": bankFile = args[++i]; break;
+                    case "--metrics": metricsFile = args[++i]; break;
+                    case "--responses": responsesFile = args[++i]; break;
+                    default:
+                        usage();
+                        return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            usage();
+            return;
+        }
+        ExamMetrics.SHARED.registerMBean();
+        if (metricsFile != null) ExamMetrics.SHARED.startDump(new File(metricsFile).toPath(), 10);
+        AMCATSimulator app = new AMCATSimulator(seed);
+        if (responsesFile != null) app.responses = ResponseLog.Writer.open(new File(responsesFile).toPath());
+        if (bankFile != null) app.bank = QuestionBank.open(new File(bankFile).toPath());
+        if (irt) {
+            if (app.bank == null) {
+                System.out.println("--irt needs a calibrated item pool: pass --bank FILE as well.");
+                return;
+            }
+            app.itemPool = ItemPool.fromBank(app.bank);
+        }
         app.loadScoresFromFile();
+        app.openProfiles();
+        app.openJournal();
         app.mainMenu();
+        app.closeJournal();
+        app.closeProfiles();
+        app.closeScores();
+        if (app.responses != null) app.responses.close();
+        ExamMetrics.SHARED.stopDump();
     }
 
     void mainMenu() {
@@ -62,8 +174,9 @@ public class AMCATSimulator {
             System.out.println("4) Save Scores to File");
             System.out.println("5) Exit");
             System.out.print("Choose an option: ");
-            String opt = scanner.nextLine().trim();
-            switch (opt) {
+            String opt = input().readLine();
+            if (opt == null) return; // end of input
+            switch (opt.trim()) {
                 case "1": startTimedExam(); break;
                 case "2": practiceMode(); break;
                 case "3": viewScores(); break;
@@ -76,424 +189,302 @@ public class AMCATSimulator {
 
     void startTimedExam() {
         System.out.println("\n-- Start Timed Exam (Aptitude + Reasoning) --");
+        long candidate = promptCandidate();
+        CandidateProfileStore.Profile profile = candidate == 0 ? null : loadProfile(candidate);
         int numQuestions = promptInt("Number of questions (suggested 10): ", 1, 100, 10);
         int minutes = promptInt("Total time in minutes (suggested 10): ", 1, 180, 10);
 
+        String sessionKey = "exam-" + (++examCounter);
+        long paperSeed = QuestionGenerator.seedFor(masterSeed, sessionKey);
+        System.out.println("Paper seed: " + masterSeed + " / " + sessionKey);
+        boolean known = profile != null && !profile.isNew(); // a returning candidate starts at their own level
+        AdaptivePolicy policy;
+        if (itemPool != null) {
+            policy = new IrtPolicy(itemPool, new SplittableRandom(paperSeed), known ? profile.theta : 0.0);
+        } else {
+            QuestionSource source = new DedupQuestionSource(bank == null ? QuestionGenerator.forSession(masterSeed, sessionKey)
+                : new QuestionBank.Source(bank, new SplittableRandom(paperSeed)), cohort);
+            policy = new AdaptivePolicy.Streak(source, known ? profile.level : 2);
+        }
         long totalMillis = minutes * 60L * 1000L;
-        long endTime = System.currentTimeMillis() + totalMillis;
-
-        int currentDifficulty = 2;
-        int correctStreak = 0;
-        int wrongStreak = 0;
-        int score = 0;
-
-        for (int q = 1; q <= numQuestions; q++) {
-            long now = System.currentTimeMillis();
-            long remaining = endTime - now;
-            if (remaining <= 0) {
-                System.out.println("\nTime's up!");
-                break;
-            }
-
-            Question question = generateRandomQuestion(currentDifficulty);
+        ExamSession session = new ExamSession(policy, numQuestions, totalMillis);
+        ExamJournal.Session logged = journal == null ? null : journal.begin(paperSeed, numQuestions, totalMillis,
+            policy instanceof IrtPolicy ? ExamJournal.POLICY_IRT : ExamJournal.POLICY_STREAK, candidate, policy.level());
+        runExam(session, logged, paperSeed, candidate, null);
+    }
 
-            System.out.printf("\nQuestion %d of %d (Difficulty: %s)\n", q, numQuestions, diffName(currentDifficulty));
+    /** Console loop for a started (or resumed) exam, then records the score. */
+    void runExam(ExamSession session, ExamJournal.Session logged, long paperSeed, long candidate,
+                 ExamJournal.Interrupted resumed) {
+        if (logged != null) session.addListener(logged);
+        if (responses != null) session.addListener(responses.session(paperSeed));
+        if (profiles != null && candidate != 0) {
+            session.addListener(resumed == null ? profiles.tracker(candidate)
+                : profiles.tracker(candidate, resumed.topicAsked, resumed.topicCorrect));
+        }
+        AdaptivePolicy policy = session.policy();
+        int numQuestions = session.numQuestions();
+        Question question;
+        while ((question = session.next()) != null) {
+            System.out.printf("\nQuestion %d of %d (Difficulty: %s)\n", session.questionNumber(), numQuestions,
+                diffName(question.difficulty));
             question.display();
 
-            int perQTimeout = (int)Math.min(60, (remaining+999)/1000);
+            int perQTimeout = session.perQuestionTimeoutSeconds();
             System.out.printf("You have up to %d seconds to answer. Enter answer: ", perQTimeout);
 
-            String userAns = readLineWithTimeout(perQTimeout);
-            if (userAns == null) {
-                System.out.println("\nNo answer entered in time. Marked wrong.");
-                wrongStreak++;
-                correctStreak = 0;
-            } else {
-                boolean correct = question.check(userAns);
-                if (correct) {
-                    System.out.println("Correct!");
-                    score += pointsForDifficulty(question.difficulty);
-                    correctStreak++;
-                    wrongStreak = 0;
-                } else {
-                    System.out.println("Incorrect. Correct answer: " + question.answer);
-                    wrongStreak++;
-                    correctStreak = 0;
-                }
+            String userAns = readLineWithTimeout(session.questionTimeoutNanos());
+            ExamSession.Result r = session.answer(userAns);
+            switch (r.outcome) {
+                case TIMED_OUT: System.out.println("\nNo answer entered in time. Marked wrong."); break;
+                case CORRECT: System.out.println("Correct!"); break;
+                default: System.out.println("Incorrect. Correct answer: " + question.answer());
             }
 
-            if (correctStreak >= 2 && currentDifficulty < 3) {
-                currentDifficulty++;
-                System.out.println("Difficulty increased to " + diffName(currentDifficulty));
-                correctStreak = 0;
-            } else if (wrongStreak >= 2 && currentDifficulty > 1) {
-                currentDifficulty--;
-                System.out.println("Difficulty decreased to " + diffName(currentDifficulty));
-                wrongStreak = 0;
+            if (r.difficultyChange > 0) {
+                System.out.println("Difficulty increased to " + diffName(session.currentDifficulty()));
+            } else if (r.difficultyChange < 0) {
+                System.out.println("Difficulty decreased to " + diffName(session.currentDifficulty()));
             }
+        }
+        if (session.isOutOfTime()) System.out.println("\nTime's up!");
+        if (policy instanceof IrtPolicy) {
+            IrtPolicy p = (IrtPolicy)policy;
+            System.out.printf("Estimated ability: %.2f (+/- %.2f)%n", p.theta(), p.standardError());
+        }
+
+        System.out.println("\nExam finished. Your score: " + session.score());
+        finishExam(session.score(), session.questionNumber(), session.currentDifficulty(), paperSeed,
+            ScoreStore.MODE_TIMED_EXAM, candidate, logged);
+    }
 
-            now = System.currentTimeMillis();
-            remaining = endTime - now;
-            if (remaining <= 0) {
-                System.out.println("\nTime's up!");
-                break;
+    /** Stores the score durably, then closes the exam in the journal (so a crash in between cannot lose it). */
+    void finishExam(int score, int questions, int finalDifficulty, long paperSeed, int mode, long candidate,
+                    ExamJournal.Session logged) {
+        try {
+            if (scores != null) {
+                ScoreStore.Record r = new ScoreStore.Record(System.currentTimeMillis(), candidate, score, questions, mode,
+                    finalDifficulty, paperSeed);
+                scores.append(r);
+                scores.force();
+                if (stats != null) stats.record(r);
+            }
+            if (logged != null) {
+                journal.awaitDurable(logged.end(score, questions, finalDifficulty));
+                journal.checkpoint();
             }
+        } catch (IOException e) {
+            System.out.println("Error recording score: " + e.getMessage());
         }
-
-        String result = String.format("%s | score: %d | date: %s", "TimedExam", score, new Date());
-        scoreHistory.add(result);
-        System.out.println("\nExam finished. Your score: " + score);
     }
 
-    void practiceMode() {
-        System.out.println("\n-- Practice Mode --");
-        System.out.println("Select difficulty: 1) Easy  2) Medium  3) Hard");
-        int d = promptInt("Choose: ",1,3,2);
+    // ---- crash recovery ----
 
-        Question q = generateRandomQuestion(d);
-        q.display();
-        System.out.print("Enter answer (no timeout in practice): ");
-        String ans = scanner.nextLine();
-        if (q.check(ans)) System.out.println("Correct!"); 
-        else System.out.println("Incorrect. Correct: " + q.answer);
+    void openJournal() {
+        try {
+            journal = ExamJournal.open(new File(journalFile).toPath());
+        } catch (IOException e) {
+            System.out.println("Exam journal unavailable, exams will not survive a crash: " + e.getMessage());
+            return;
+        }
+        for (ExamJournal.Interrupted exam : journal.interrupted()) {
+            System.out.println("\nFound an interrupted " + exam + ".");
+            boolean resumable = exam.policy == ExamJournal.POLICY_STREAK && exam.answered < exam.numQuestions
+                && exam.remainingMillis > 0;
+            String answer = resumable ? promptLine("Resume it? (y/n): ") : "n";
+            if (answer != null && answer.trim().equalsIgnoreCase("y")) resumeExam(exam);
+            else finalizeExam(exam);
+        }
     }
 
-    Question generateRandomQuestion(int difficulty) {
-        int type = rand.nextInt(10); // 10 different question types
-        
-        switch (difficulty) {
-            case 1: return generateEasyQuestion(type);
-            case 2: return generateMediumQuestion(type);
-            case 3: return generateHardQuestion(type);
-            default: return generateMediumQuestion(type);
-        }
+    /** Continues with the time and questions that were left, without repeating earlier questions. */
+    void resumeExam(ExamJournal.Interrupted exam) {
+        DedupQuestionSource.SessionFilter seen = new DedupQuestionSource.SessionFilter(DedupQuestionSource.SessionFilter.DEFAULT_BITS);
+        for (int i = 0; i < exam.asked; i++) seen.add(exam.fingerprints[i]);
+        long seed = QuestionGenerator.seedFor(exam.paperSeed, "resume-" + exam.answered);
+        QuestionSource source = new DedupQuestionSource(bank == null
+            ? new QuestionGenerator(new SplittableRandom(seed), QuestionGenerator.IdSequence.SHARED)
+            : new QuestionBank.Source(bank, new SplittableRandom(seed)), seen, cohort);
+        AdaptivePolicy policy = new AdaptivePolicy.Streak(source, exam.startLevel);
+        for (int i = 0; i < exam.answered; i++) policy.record(null, exam.correct.get(i)); // back to the same level
+        ExamSession session = new ExamSession(policy, exam.numQuestions, exam.remainingMillis);
+        session.restore(exam.answered, exam.score);
+        runExam(session, journal.resume(exam), exam.paperSeed, exam.candidate, exam);
     }
 
-    Question generateEasyQuestion(int type) {
-        int id = questionIdCounter++;
-        
-        switch (type % 10) {
-            case 0: { // Simple linear equation
-                int a = rand.nextInt(5) + 2;
-                int b = rand.nextInt(20) + 5;
-                int result = rand.nextInt(15) + 10;
-                int x = (result - b) / a;
-                String prompt = String.format("If %dx + %d = %d, what is x?", a, b, result);
-                return new Question(id, 1, prompt, null, String.valueOf(x));
-            }
-            case 1: { // Number series
-                int start = rand.nextInt(10) + 1;
-                int diff = rand.nextInt(5) + 1;
-                int next = start + 4 * diff;
-                String prompt = String.format("Find the next number: %d, %d, %d, %d, ?", 
-                    start, start+diff, start+2*diff, start+3*diff);
-                return new Question(id, 1, prompt, null, String.valueOf(next));
-            }
-            case 2: { // Simple percentage
-                int whole = rand.nextInt(9) + 1;
-                int percent = (rand.nextInt(4) + 1) * 25;
-                int answer = whole * percent / 100;
-                String prompt = String.format("What is %d%% of %d?", percent, whole * 10);
-                return new Question(id, 1, prompt, null, String.valueOf(answer * 10));
-            }
-            case 3: { // Simple average
-                int a = rand.nextInt(20) + 10;
-                int b = rand.nextInt(20) + 10;
-                int c = rand.nextInt(20) + 10;
-                int avg = (a + b + c) / 3;
-                String prompt = String.format("What is the average of %d, %d, and %d?", a, b, c);
-                return new Question(id, 1, prompt, null, String.valueOf(avg));
-            }
-            case 4: { // Age problems
-                int myAge = rand.nextInt(30) + 20;
-                int years = rand.nextInt(10) + 5;
-                int future = myAge + years;
-                String prompt = String.format("I am %d years old. How old will I be in %d years?", myAge, years);
-                return new Question(id, 1, prompt, null, String.valueOf(future));
-            }
-            case 5: { // Simple multiplication
-                int a = rand.nextInt(10) + 5;
-                int b = rand.nextInt(10) + 5;
-                String prompt = String.format("What is %d × %d?", a, b);
-                return new Question(id, 1, prompt, null, String.valueOf(a * b));
-            }
-            case 6: { // Odd one out
-                String[] items = {"Apple", "Banana", "Carrot", "Mango"};
-                String prompt = "Which one is NOT a fruit?";
-                return new Question(id, 1, prompt, items, "C");
-            }
-            case 7: { // Simple ratio
-                int total = (rand.nextInt(5) + 2) * 10;
-                int ratio1 = rand.nextInt(3) + 1;
-                int ratio2 = rand.nextInt(3) + 1;
-                int part1 = total * ratio1 / (ratio1 + ratio2);
-                String prompt = String.format("Divide %d in the ratio %d:%d. What is the first part?", 
-                    total, ratio1, ratio2);
-                return new Question(id, 1, prompt, null, String.valueOf(part1));
-            }
-            case 8: { // Antonym
-                String[][] pairs = {
-                    {"Happy", "Sad", "Joyful", "Excited", "Cheerful"},
-                    {"Hot", "Cold", "Warm", "Boiling", "Heated"},
-                    {"Big", "Small", "Large", "Huge", "Giant"}
-                };
-                String[] pair = pairs[rand.nextInt(pairs.length)];
-                String prompt = String.format("What is the opposite of '%s'?", pair[0]);
-                return new Question(id, 1, prompt, 
-                    new String[]{pair[1], pair[2], pair[3], pair[4]}, "A");
-            }
-            default: { // Simple addition
-                int a = rand.nextInt(50) + 10;
-                int b = rand.nextInt(50) + 10;
-                String prompt = String.format("What is %d + %d?", a, b);
-                return new Question(id, 1, prompt, null, String.valueOf(a + b));
+    /** Records the interrupted exam's score so far, unless it reached the score store before the crash. */
+    void finalizeExam(ExamJournal.Interrupted exam) {
+        try {
+            if (scores != null) {
+                for (ScoreStore.Record r : scores.newest(0, 64)) {
+                    if (r.paperSeed == exam.paperSeed && r.timestamp >= exam.startTime) {
+                        journal.awaitDurable(journal.resume(exam).end(r.score, r.questions, r.finalDifficulty));
+                        return;
+                    }
+                }
             }
+        } catch (IOException e) {
+            System.out.println("Error reading past scores: " + e.getMessage());
         }
+        System.out.println("Recorded score " + exam.score + " for the interrupted exam.");
+        recoverProfile(exam);
+        finishExam(exam.score, exam.answered, exam.level, exam.paperSeed, ScoreStore.MODE_RECOVERED, exam.candidate,
+            journal.resume(exam));
     }
 
-    Question generateMediumQuestion(int type) {
-        int id = questionIdCounter++;
-        
-        switch (type % 10) {
-            case 0: { // Train/Speed problems
-                int length = (rand.nextInt(10) + 5) * 10;
-                int time = rand.nextInt(8) + 3;
-                int speed = length / time;
-                String prompt = String.format("A train %dm long passes a pole in %d seconds. What is the speed (m/s)?", 
-                    length, time);
-                return new Question(id, 2, prompt, null, String.valueOf(speed));
-            }
-            case 1: { // Ratio with sum
-                int ratio1 = rand.nextInt(4) + 2;
-                int ratio2 = rand.nextInt(4) + 3;
-                int sum = (ratio1 + ratio2) * (rand.nextInt(5) + 3);
-                int num1 = sum * ratio1 / (ratio1 + ratio2);
-                int num2 = sum - num1;
-                String prompt = String.format("The ratio of two numbers is %d:%d and their sum is %d. What are the numbers? (smaller,larger)", 
-                    ratio1, ratio2, sum);
-                return new Question(id, 2, prompt, null, String.format("%d,%d", num1, num2));
-            }
-            case 2: { // Profit/Loss percentage
-                int cp = (rand.nextInt(10) + 10) * 10;
-                int profitPercent = (rand.nextInt(4) + 1) * 5;
-                int sp = cp + (cp * profitPercent / 100);
-                String prompt = String.format("An item is bought for ₹%d and sold at %d%% profit. What is the selling price?", 
-                    cp, profitPercent);
-                return new Question(id, 2, prompt, null, String.valueOf(sp));
-            }
-            case 3: { // Time and Work
-                int days1 = (rand.nextInt(5) + 3) * 4;
-                int days2 = (rand.nextInt(5) + 4) * 4;
-                double combined = 1.0/days1 + 1.0/days2;
-                int together = (int)Math.round(1.0/combined);
-                String prompt = String.format("A can complete work in %d days, B in %d days. Working together, how many days?", 
-                    days1, days2);
-                return new Question(id, 2, prompt, null, String.valueOf(together));
-            }
-            case 4: { // Compound interest
-                int principal = (rand.nextInt(5) + 5) * 1000;
-                int rate = rand.nextInt(4) + 5;
-                int time = 2;
-                int amount = (int)(principal * Math.pow(1 + rate/100.0, time));
-                int ci = amount - principal;
-                String prompt = String.format("Find compound interest on ₹%d at %d%% for 2 years.", 
-                    principal, rate);
-                return new Question(id, 2, prompt, null, String.valueOf(ci));
-            }
-            case 5: { // Geometric progression
-                int first = rand.nextInt(5) + 2;
-                int ratio = rand.nextInt(3) + 2;
-                int next = first * ratio * ratio * ratio;
-                String prompt = String.format("Find the next term: %d, %d, %d, ?", 
-                    first, first*ratio, first*ratio*ratio);
-                return new Question(id, 2, prompt, null, String.valueOf(next));
-            }
-            case 6: { // Permutation
-                int n = rand.nextInt(4) + 4;
-                int r = rand.nextInt(n-1) + 1;
-                int perm = factorial(n) / factorial(n-r);
-                String prompt = String.format("How many ways can you arrange %d items from %d distinct items?", r, n);
-                return new Question(id, 2, prompt, null, String.valueOf(perm));
-            }
-            case 7: { // Probability
-                int total = rand.nextInt(10) + 10;
-                int favorable = rand.nextInt(total/2) + 1;
-                String prompt = String.format("In a bag of %d balls, %d are red. What is the probability of drawing a red ball? (as fraction, e.g., 1/4)", 
-                    total, favorable);
-                int gcd = gcd(favorable, total);
-                return new Question(id, 2, prompt, null, 
-                    String.format("%d/%d", favorable/gcd, total/gcd));
-            }
-            case 8: { // Blood relation
-                String[][] relations = {
-                    {"A's mother", "B", "grandmother", "mother"},
-                    {"A's brother", "C", "uncle", "father"},
-                    {"A's sister", "D", "aunt", "mother"}
-                };
-                String[] rel = relations[rand.nextInt(relations.length)];
-                String prompt = String.format("If %s is %s, then what is B to A's child?", rel[0], rel[1]);
-                return new Question(id, 2, prompt, 
-                    new String[]{rel[2], "Sibling", "Cousin", "Niece"}, "A");
-            }
-            default: { // Mixture problem
-                int qty1 = rand.nextInt(20) + 10;
-                int qty2 = rand.nextInt(20) + 10;
-                int price1 = rand.nextInt(10) + 10;
-                int price2 = rand.nextInt(10) + 15;
-                int avgPrice = (qty1*price1 + qty2*price2) / (qty1+qty2);
-                String prompt = String.format("Mix %dkg at ₹%d/kg with %dkg at ₹%d/kg. Average price/kg?", 
-                    qty1, price1, qty2, price2);
-                return new Question(id, 2, prompt, null, String.valueOf(avgPrice));
-            }
+    /** Folds an interrupted exam's answers and score into the candidate's profile, unless its tracker already did. */
+    void recoverProfile(ExamJournal.Interrupted exam) {
+        if (profiles == null || exam.candidate == 0) return;
+        try {
+            profiles.update(exam.candidate, p -> {
+                if (p.lastSeen >= exam.lastTime) return; // finished (and tracked) just before the crash
+                for (Topic t : Topic.values()) {
+                    p.asked[t.ordinal()] += exam.topicAsked[t.ordinal()];
+                    p.correct[t.ordinal()] += exam.topicCorrect[t.ordinal()];
+                }
+                p.recordExam(exam.score, exam.level, CandidateProfileStore.levelTheta(exam.level), System.currentTimeMillis());
+            });
+        } catch (IOException e) {
+            System.out.println("Error recording candidate profile: " + e.getMessage());
         }
     }
 
-    Question generateHardQuestion(int type) {
-        int id = questionIdCounter++;
-        
-        switch (type % 10) {
-            case 0: { // Sum of n natural numbers
-                int sum = (rand.nextInt(10) + 10) * (rand.nextInt(10) + 10);
-                int n = (int)Math.sqrt(2 * sum);
-                while (n * (n+1) / 2 != sum) n++;
-                String prompt = String.format("If sum of first n natural numbers is %d, find n.", sum);
-                return new Question(id, 3, prompt, null, String.valueOf(n));
-            }
-            case 1: { // Complex work problem
-                int days1 = rand.nextInt(8) + 8;
-                int days2 = rand.nextInt(8) + 12;
-                int workedDays = rand.nextInt(days1-2) + 2;
-                double workDone = workedDays * 1.0 / days1;
-                double remaining = 1.0 - workDone;
-                int moreDays = (int)Math.ceil(remaining * days2);
-                int total = workedDays + moreDays;
-                String prompt = String.format("A can finish work in %d days, B in %d days. A works for %d days then B finishes. Total days?", 
-                    days1, days2, workedDays);
-                return new Question(id, 3, prompt, null, String.valueOf(total));
-            }
-            case 2: { // Calendar problems
-                String[] days = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
-                int startDay = rand.nextInt(7);
-                int addDays = rand.nextInt(100) + 50;
-                int endDay = (startDay + addDays) % 7;
-                String prompt = String.format("If today is %s, what day will it be %d days later?", 
-                    days[startDay], addDays);
-                return new Question(id, 3, prompt, 
-                    new String[]{days[endDay], days[(endDay+1)%7], days[(endDay+2)%7], days[(endDay+3)%7]}, "A");
-            }
-            case 3: { // Logarithm
-                int base = rand.nextInt(3) + 2;
-                int exp = rand.nextInt(4) + 2;
-                int value = (int)Math.pow(base, exp);
-                String prompt = String.format("What is log%d(%d)?", base, value);
-                return new Question(id, 3, prompt, null, String.valueOf(exp));
-            }
-            case 4: { // Arithmetic progression
-                int first = rand.nextInt(10) + 5;
-                int diff = rand.nextInt(5) + 2;
-                int n = rand.nextInt(10) + 10;
-                int sum = n * (2*first + (n-1)*diff) / 2;
-                String prompt = String.format("Sum of %d terms of AP with first term %d and common difference %d?", 
-                    n, first, diff);
-                return new Question(id, 3, prompt, null, String.valueOf(sum));
-            }
-            case 5: { // Pipe and cistern
-                int fill1 = rand.nextInt(10) + 10;
-                int fill2 = rand.nextInt(10) + 15;
-                int empty = rand.nextInt(15) + 20;
-                double netRate = 1.0/fill1 + 1.0/fill2 - 1.0/empty;
-                int time = (int)Math.round(1.0/netRate);
-                String prompt = String.format("Pipe A fills tank in %dh, B in %dh, C empties in %dh. All open, tank fills in?", 
-                    fill1, fill2, empty);
-                return new Question(id, 3, prompt, null, String.valueOf(time));
-            }
-            case 6: { // Clock angle
-                int hour = rand.nextInt(11) + 1;
-                int minute = rand.nextInt(12) * 5;
-                double hourAngle = (hour % 12) * 30 + minute * 0.5;
-                double minuteAngle = minute * 6;
-                double angle = Math.abs(hourAngle - minuteAngle);
-                if (angle > 180) angle = 360 - angle;
-                String prompt = String.format("What is the angle between hour and minute hands at %d:%02d?", 
-                    hour, minute);
-                return new Question(id, 3, prompt, null, String.valueOf((int)angle));
-            }
-            case 7: { // Syllogism (complex)
-                String prompt = "All X are Y. All Y are Z. Some Z are W. Which conclusion is valid?";
-                return new Question(id, 3, prompt, 
-                    new String[]{"All X are Z", "Some W are X", "No X are W", "None of these"}, "A");
-            }
-            case 8: { // Data sufficiency
-                int x = rand.nextInt(20) + 10;
-                String prompt = String.format("To find the value of x: (1) x + 5 = %d  (2) 2x = %d. Which statement(s) sufficient?", 
-                    x+5, 2*x);
-                return new Question(id, 3, prompt, 
-                    new String[]{"(1) alone", "(2) alone", "Both together", "Each alone"}, "D");
-            }
-            default: { // Cube root
-                int num = rand.nextInt(9) + 2;
-                int cube = num * num * num;
-                String prompt = String.format("What is the cube root of %d?", cube);
-                return new Question(id, 3, prompt, null, String.valueOf(num));
-            }
+    void closeJournal() throws IOException {
+        if (journal == null) return;
+        journal.checkpoint();
+        journal.close();
+        journal = null;
+    }
+
+    // ---- candidate profiles ----
+
+    void openProfiles() {
+        try {
+            profiles = CandidateProfileStore.open(new File(profileFile).toPath(), profileCacheSize);
+        } catch (IOException e) {
+            System.out.println("Candidate profiles unavailable, every exam starts at Medium: " + e.getMessage());
         }
     }
 
-    int factorial(int n) {
-        if (n <= 1) return 1;
-        int result = 1;
-        for (int i = 2; i <= n; i++) result *= i;
-        return result;
+    void closeProfiles() throws IOException {
+        if (profiles != null) profiles.close();
+        profiles = null;
     }
 
-    int gcd(int a, int b) {
-        while (b != 0) {
-            int temp = b;
-            b = a % b;
-            a = temp;
+    /** Candidate number, or 0 for a guest (no profile, score recorded anonymously). */
+    long promptCandidate() {
+        while (true) {
+            String line = promptLine("Candidate ID (Enter for guest): ");
+            if (line == null || line.trim().isEmpty()) return 0;
+            try {
+                long id = Long.parseLong(line.trim());
+                if (id > 0) return id;
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            System.out.println("Please enter a positive number, or nothing for guest.");
         }
-        return a;
+    }
+
+    /** Greets the candidate with their history; null if profiles are unavailable. */
+    CandidateProfileStore.Profile loadProfile(long candidate) {
+        if (profiles == null) return null;
+        try {
+            CandidateProfileStore.Profile p = profiles.get(candidate);
+            if (p.isNew()) {
+                System.out.println("New candidate " + candidate + ": starting at Medium.");
+                return p;
+            }
+            System.out.printf("Welcome back, candidate %d: %d exams, best score %d, recent %s.%n", candidate, p.exams,
+                p.bestScore, Arrays.toString(p.recentScores()));
+            Topic weakest = p.weakestTopic(3);
+            if (weakest != null) {
+                System.out.printf("Weakest topic so far: %s (%.0f%% correct).%n", weakest.label, 100 * p.accuracy(weakest));
+            }
+            System.out.println("Starting at your last level: " + diffName(p.level) + ".");
+            return p;
+        } catch (IOException e) {
+            System.out.println("Could not read the candidate profile: " + e.getMessage());
+            return null;
+        }
+    }
+
+    void practiceMode() {
+        System.out.println("\n-- Practice Mode --");
+        System.out.println("Select difficulty: 1) Easy  2) Medium  3) Hard");
+        int d = promptInt("Choose: ",1,3,2);
+
+        Question q = practiceSource.next(d);
+        q.display();
+        System.out.print("Enter answer (no timeout in practice): ");
+        String ans = input().readLine();
+        if (q.check(ans)) System.out.println("Correct!"); 
+        else System.out.println("Incorrect. Correct: " + q.answer());
     }
 
     void viewScores() {
         System.out.println("\n-- Past Scores --");
-        if (scoreHistory.isEmpty()) {
+        if (scores == null || scores.count() == 0) {
             System.out.println("No past scores yet.");
             return;
         }
-        for (String s : scoreHistory) System.out.println(s);
+        final int PAGE = 10;
+        try {
+            if (stats == null) stats = ScoreStats.rebuild(scores, 5);
+            System.out.print(stats.describe());
+            System.out.println();
+            for (long skip = 0; skip < scores.count(); skip += PAGE) {
+                for (ScoreStore.Record r : scores.newest(skip, PAGE)) System.out.println(r);
+                if (skip + PAGE >= scores.count()) break;
+                System.out.printf("-- %d of %d shown. Enter for more, q to stop: ", skip + PAGE, scores.count());
+                String more = input().readLine();
+                if (more == null || more.trim().equalsIgnoreCase("q")) break;
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading past scores: " + e.getMessage());
+        }
     }
 
     void saveScoresToFile() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(SCORE_FILE, true))) {
-            for (String s : scoreHistory) {
-                writer.println(s);
-            }
-            scoreHistory.clear();
-            System.out.println("Scores saved to '" + SCORE_FILE + "'.");
+        if (scores == null) {
+            System.out.println("Score store is not available.");
+            return;
+        }
+        try {
+            scores.force(); // every result is appended as soon as the exam ends
+            System.out.println("Scores saved to '" + scoreFile + "'.");
         } catch (IOException e) {
             System.out.println("Error saving scores: " + e.getMessage());
         }
     }
 
     void loadScoresFromFile() {
-        File f = new File(SCORE_FILE);
-        if (!f.exists()) return;
-        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (!line.trim().isEmpty()) scoreHistory.add(line);
-            }
+        try {
+            scores = ScoreStore.open(new File(scoreFile).toPath());
+            long imported = scores.importLegacy(new File(legacyScoreFile).toPath());
+            if (imported > 0) System.out.println("Imported " + imported + " past scores from '" + legacyScoreFile + "'.");
         } catch (IOException e) {
             System.out.println("Error loading past scores: " + e.getMessage());
         }
     }
 
+    void closeScores() throws IOException {
+        if (scores != null) scores.close();
+        scores = null;
+        stats = null;
+    }
+
+    String promptLine(String prompt) {
+        System.out.print(prompt);
+        return input().readLine();
+    }
+
     int promptInt(String prompt, int min, int max, int defaultVal) {
         while (true) {
             System.out.print(prompt);
-            String line = scanner.nextLine().trim();
-            if (line.isEmpty()) return defaultVal;
+            String line = input().readLine();
+            if (line == null || line.trim().isEmpty()) return defaultVal;
+            line = line.trim();
             try {
                 int v = Integer.parseInt(line);
                 if (v < min || v > max) {
@@ -507,7 +498,7 @@ public class AMCATSimulator {
         }
     }
 
-    String diffName(int d) {
+    static String diffName(int d) {
         switch (d) {
             case 1: return "Easy";
             case 2: return "Medium";
@@ -516,7 +507,7 @@ public class AMCATSimulator {
         }
     }
 
-    int pointsForDifficulty(int d) {
+    static int pointsForDifficulty(int d) {
         switch (d) {
             case 1: return 2;
             case 2: return 5;
@@ -525,24 +516,19 @@ public class AMCATSimulator {
         }
     }
 
-    String readLineWithTimeout(int timeoutSeconds) {
-        ExecutorService ex = Executors.newSingleThreadExecutor();
-        Future<String> future = ex.submit(() -> {
-            try {
-                return scanner.nextLine();
-            } catch (NoSuchElementException e) {
-                return null;
-            }
-        });
-        try {
-            return future.get(timeoutSeconds, TimeUnit.SECONDS);
-        } catch (TimeoutException te) {
-            future.cancel(true);
-            return null;
-        } catch (InterruptedException | ExecutionException e) {
-            return null;
-        } finally {
-            ex.shutdownNow();
+    String readLineWithTimeout(long timeoutNanos) {
+        long start = System.nanoTime();
+        String line = input().readLine(timeoutNanos, TimeUnit.NANOSECONDS);
+        if (line == null) {
+            long late = System.nanoTime() - start - timeoutNanos;
+            if (late >= 0) ExamMetrics.SHARED.recordTimeoutOvershoot(late); // not end of input
+            input().discardPending(); // a late answer must not land on the next question
         }
+        return line;
+    }
+
+    private InputPump input() {
+        if (input == null) input = new InputPump(System.in);
+        return input;
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+/**
+ * Decides which question an ExamSession asks next and how it adapts
+ * - Streak: the classic rule (two right = up a level, two wrong = down)
+ * - IrtPolicy: ability estimation with most-informative item selection
+ */
+interface AdaptivePolicy {
+
+    /** Next question to ask. */
+    AMCATSimulator.Question next();
+
+    /** Feeds back the graded response to the question last returned by next(). */
+    void record(AMCATSimulator.Question q, boolean correct);
+
+    /** Current difficulty tier (1-3) used for display and score records. */
+    int level();
+
+    /** Two correct answers in a row move up one of three levels, two wrong move down. */
+    class Streak implements AdaptivePolicy {
+        private final QuestionSource source;
+        private int currentDifficulty;
+        private int correctStreak = 0;
+        private int wrongStreak = 0;
+
+        Streak(QuestionSource source) {
+            this(source, 2);
+        }
+
+        Streak(QuestionSource source, int startDifficulty) {
+            this.source = source;
+            this.currentDifficulty = startDifficulty;
+        }
+
+        @Override
+        public AMCATSimulator.Question next() {
+            return source.next(currentDifficulty);
+        }
+
+        @Override
+        public void record(AMCATSimulator.Question q, boolean correct) {
+            if (correct) {
+                correctStreak++;
+                wrongStreak = 0;
+            } else {
+                wrongStreak++;
+                correctStreak = 0;
+            }
+
+            if (correctStreak >= 2 && currentDifficulty < 3) {
+                currentDifficulty++;
+                correctStreak = 0;
+            } else if (wrongStreak >= 2 && currentDifficulty > 1) {
+                currentDifficulty--;
+                wrongStreak = 0;
+            }
+        }
+
+        @Override
+        public int level() {
+            return currentDifficulty;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Canonical, allocation-free form of an answer packed into one long
+ * - INT      "42", " +42 "             -> value
+ * - FRACTION "2/8", "1 / 4"            -> reduced numerator/denominator
+ *                                         (n/1 collapses to INT)
+ * - PAIR     "4,6", "4, 6"             -> ordered (first, second)
+ * - OPTION   "c", "C", "C)", "(c)"     -> option index
+ * - TEXT     anything else             -> hash of the case-folded text with
+ *                                         runs of whitespace collapsed; a
+ *                                         String and its UTF-8 bytes hash
+ *                                         alike (non-ASCII text is decoded,
+ *                                         the only case that allocates)
+ * Two answers match iff their canonical longs are equal.
+ */
+final class AnswerForm {
+
+    static final int INT = 1, FRACTION = 2, PAIR = 3, OPTION = 4, TEXT = 15;
+
+    private static final long FIELD = (1L << 30) - 1;
+    private static final int LIMIT = 1 << 29; // magnitude that fits a 30-bit signed field
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[128]);
+
+    private AnswerForm() {
+    }
+
+    static int kind(long canonical) {
+        return (int)(canonical >>> 60);
+    }
+
+    static long ofInt(long v) {
+        return pack(INT, v, 0);
+    }
+
+    static long ofPair(long first, long second) {
+        return pack(PAIR, first, second);
+    }
+
+    /** Reduced like a parsed "n/d" (so 4/2 is INT 2); d must be positive. */
+    static long ofFraction(long n, long d) {
+        long g = gcd(Math.abs(n), d);
+        return d / g == 1 ? pack(INT, n / g, 0) : pack(FRACTION, n / g, d / g);
+    }
+
+    static long ofOption(int index) {
+        return pack(OPTION, index, 0);
+    }
+
+    /** Shortest text that parses back to {@code canonical} ("42", "1/4", "4,6", "c"); null for TEXT. */
+    static String format(long canonical) {
+        long a = canonical << 4 >> 34, b = canonical << 34 >> 34; // sign-extended fields
+        switch (kind(canonical)) {
+            case INT: return Long.toString(a);
+            case FRACTION: return a + "/" + b;
+            case PAIR: return a + "," + b;
+            case OPTION: return String.valueOf((char)('a' + a));
+            default: return null;
+        }
+    }
+
+    static long parse(String s) {
+        if (s == null) return 0; // never a valid canonical value (kind 0)
+        int len = s.length();
+        byte[] b = SCRATCH.get();
+        if (len > b.length) b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) return text(s);
+            b[i] = (byte)c;
+        }
+        return parse(b, 0, len);
+    }
+
+    /** Parses UTF-8 bytes; non-ASCII bytes only ever land in the TEXT hash. */
+    static long parse(byte[] b, int off, int len) {
+        int start = off, end = off + len;
+        while (start < end && isSpace(b[start])) start++;
+        while (end > start && isSpace(b[end - 1])) end--;
+        if (start == end) return text(b, start, end);
+
+        int letter = option(b, start, end);
+        if (letter >= 0) return pack(OPTION, letter, 0);
+
+        long first = number(b, start, end);
+        if (first < 0) return text(b, start, end);
+        int p = skipSpace(b, (int)(first >>> 32), end);
+        if (p == end) return pack(INT, (int)first, 0);
+
+        byte sep = b[p];
+        if (sep != '/' && sep != ',') return text(b, start, end);
+        long second = number(b, skipSpace(b, p + 1, end), end);
+        if (second < 0 || skipSpace(b, (int)(second >>> 32), end) != end) return text(b, start, end);
+        long a = (int)first, c = (int)second;
+
+        if (sep == ',') return pack(PAIR, a, c);
+        if (c == 0) return text(b, start, end);
+        if (c < 0) {
+            a = -a;
+            c = -c;
+        }
+        long g = gcd(Math.abs(a), c);
+        a /= g;
+        c /= g;
+        return c == 1 ? pack(INT, a, 0) : pack(FRACTION, a, c);
+    }
+
+    /** Parses [+-]digits; returns (index after it << 32 | value as int), or -1. */
+    private static long number(byte[] b, int p, int end) {
+        boolean neg = false;
+        if (p < end && (b[p] == '-' || b[p] == '+')) {
+            neg = b[p] == '-';
+            p++;
+        }
+        int digitsStart = p;
+        int v = 0;
+        while (p < end && b[p] >= '0' && b[p] <= '9') {
+            v = v * 10 + (b[p] - '0');
+            if (v >= LIMIT) return -1;
+            p++;
+        }
+        if (p == digitsStart) return -1;
+        return ((long)p << 32) | ((neg ? -v : v) & 0xffffffffL);
+    }
+
+    /** "c", "C)", "(c)", "c." -> 2; otherwise -1. */
+    private static int option(byte[] b, int start, int end) {
+        if (b[start] == '(' && end - start == 3 && b[end - 1] == ')') start++;
+        int c = b[start] | 0x20;
+        if (c < 'a' || c > 'z') return -1;
+        int rest = end - start - 1;
+        if (rest == 0) return c - 'a';
+        if (rest == 1 && (b[start + 1] == ')' || b[start + 1] == '.')) return c - 'a';
+        return -1;
+    }
+
+    private static long pack(int kind, long a, long b) {
+        return ((long)kind << 60) | ((a & FIELD) << 30) | (b & FIELD);
+    }
+
+    private static long text(byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] < 0) return text(new String(b, start, end - start, StandardCharsets.UTF_8));
+        }
+        long h = 0xcbf29ce484222325L;
+        boolean space = false;
+        for (int i = start; i < end; i++) {
+            int c = b[i];
+            if (isSpace((byte)c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                h = (h ^ ' ') * 0x100000001b3L;
+                space = false;
+            }
+            if (c >= 'A' && c <= 'Z') c |= 0x20;
+            h = (h ^ (c & 0xff)) * 0x100000001b3L;
+        }
+        return ((long)TEXT << 60) | (h >>> 4);
+    }
+
+    private static long text(String s) {
+        long h = 0xcbf29ce484222325L;
+        boolean space = false;
+        int start = 0, end = s.length();
+        while (start < end && Character.isWhitespace(s.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(s.charAt(end - 1))) end--;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                h = (h ^ ' ') * 0x100000001b3L;
+                space = false;
+            }
+            h = (h ^ Character.toLowerCase(c)) * 0x100000001b3L;
+        }
+        return ((long)TEXT << 60) | (h >>> 4);
+    }
+
+    private static int skipSpace(byte[] b, int p, int end) {
+        while (p < end && isSpace(b[p])) p++;
+        return p;
+    }
+
+    /** Character.isWhitespace() restricted to ASCII, so both text() overloads agree. */
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c >= '\t' && c <= '\r' || c >= 0x1c && c <= 0x1f;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = b;
+            b = a % b;
+            a = t;
+        }
+        return a == 0 ? 1 : a;
+    }
+}
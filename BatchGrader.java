@@ -0,0 +1,331 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Offline bulk grading of submitted answer sheets
+ * - The answer key (a BulkGenerator file) is loaded once into dense arrays of
+ *   canonical answers (AnswerForm) and points per question
+ * - The response file is split into newline-aligned ranges that are
+ *   memory-mapped and graded in parallel, one worker per range
+ * - Responses are parsed straight from the mapped bytes into canonical form,
+ *   so grading allocates nothing per record
+ * - Scores use AMCATSimulator.pointsForDifficulty(), like the timed exam
+ * - Responses longer than MAX_ANSWER bytes are counted and rejected rather
+ *   than graded on a truncated prefix
+ *
+ * Response file: one record per line, tab separated
+ *   candidateId(number)  questionId  response
+ * Output: candidateId  answered  correct  score   (sorted by candidate)
+ *
+ * Usage: java BatchGrader <answer-key-file> <responses-file> <out-file>
+ */
+public class BatchGrader {
+
+    private static final long MAX_RANGE = 1L << 30; // mapped bytes per worker range
+    static final int MAX_ANSWER = 256;              // longer responses are rejected, not graded
+
+    private final int baseId;
+    private final long[] canonical; // 0 = no such question
+    private final byte[] points;
+
+    BatchGrader(int baseId, long[] canonical, byte[] points) {
+        this.baseId = baseId;
+        this.canonical = canonical;
+        this.points = points;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: java BatchGrader <answer-key-file> <responses-file> <out-file>");
+            return;
+        }
+        long start = System.nanoTime();
+        BatchGrader grader = loadKey(Paths.get(args[0]));
+        long keyed = System.nanoTime();
+
+        Totals totals = grader.grade(Paths.get(args[1]), ForkJoinPool.commonPool());
+        long graded = System.nanoTime();
+        totals.write(Paths.get(args[2]));
+
+        double seconds = (graded - keyed) / 1e9;
+        System.out.printf("Answer key: %d questions in %.2f s%n", grader.canonical.length, (keyed - start) / 1e9);
+        System.out.printf("Graded %d responses for %d candidates in %.2f s (%.0f responses/s, %.1fM/min)%n",
+            totals.responses, totals.candidates.size, seconds, totals.responses / seconds,
+            totals.responses / seconds * 60 / 1e6);
+        if (totals.unknown > 0) System.out.println("Skipped " + totals.unknown + " responses to unknown question IDs");
+        if (totals.overlong > 0) {
+            System.out.println("Rejected " + totals.overlong + " responses longer than " + MAX_ANSWER + " bytes (not graded)");
+        }
+    }
+
+    // ---- answer key ----
+
+    /** Reads id, difficulty and answer from every line of a BulkGenerator file. */
+    static BatchGrader loadKey(Path keyFile) throws IOException {
+        int n = 0;
+        int[] ids = new int[1 << 16];
+        long[] canon = new long[1 << 16];
+        byte[] diff = new byte[1 << 16];
+        byte[] scratch = new byte[MAX_ANSWER];
+
+        try (FileChannel ch = FileChannel.open(keyFile, StandardOpenOption.READ)) {
+            for (long[] range : ranges(ch, 1)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+                int p = 0, end = buf.limit();
+                while (p < end) {
+                    int eol = p;
+                    while (eol < end && buf.get(eol) != '\n') eol++;
+                    if (buf.get(p) != '#' && eol > p) {
+                        int lastTab = eol - 1;
+                        while (lastTab > p && buf.get(lastTab) != '\t') lastTab--;
+                        if (n == ids.length) {
+                            ids = Arrays.copyOf(ids, n * 2);
+                            canon = Arrays.copyOf(canon, n * 2);
+                            diff = Arrays.copyOf(diff, n * 2);
+                        }
+                        long id = digits(buf, p);
+                        ids[n] = (int)id;
+                        diff[n] = (byte)digits(buf, (int)(id >>> 32) + 1);
+                        int len = copy(buf, lastTab + 1, trimCr(buf, eol), scratch);
+                        if (len < 0) throw new IOException("Answer to question " + ids[n] + " is longer than " + MAX_ANSWER + " bytes");
+                        canon[n] = AnswerForm.parse(scratch, 0, len);
+                        n++;
+                    }
+                    p = eol + 1;
+                }
+            }
+        }
+        if (n == 0) throw new IOException("Answer key is empty: " + keyFile);
+
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            min = Math.min(min, ids[i]);
+            max = Math.max(max, ids[i]);
+        }
+        long span = (long)max - min + 1;
+        if (span > 4L * n + (1 << 20)) throw new IOException("Question IDs in answer key are too sparse");
+        long[] denseCanon = new long[(int)span];
+        byte[] densePoints = new byte[(int)span];
+        for (int i = 0; i < n; i++) {
+            denseCanon[ids[i] - min] = canon[i];
+            densePoints[ids[i] - min] = (byte)AMCATSimulator.pointsForDifficulty(diff[i]);
+        }
+        return new BatchGrader(min, denseCanon, densePoints);
+    }
+
+    // ---- grading ----
+
+    Totals grade(Path responses, ForkJoinPool pool) throws Exception {
+        try (FileChannel ch = FileChannel.open(responses, StandardOpenOption.READ)) {
+            List<long[]> ranges = ranges(ch, pool.getParallelism() * 4);
+            List<Future<Totals>> parts = new ArrayList<>();
+            for (long[] r : ranges) parts.add(pool.submit(() -> gradeRange(ch, r[0], r[1])));
+
+            Totals all = new Totals();
+            for (Future<Totals> f : parts) {
+                try {
+                    all.merge(f.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+                    throw e;
+                }
+            }
+            return all;
+        }
+    }
+
+    private Totals gradeRange(FileChannel ch, long from, long to) throws IOException {
+        Totals t = new Totals();
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        byte[] scratch = new byte[MAX_ANSWER];
+        int p = 0, end = buf.limit();
+        while (p < end) {
+            int eol = p;
+            while (eol < end && buf.get(eol) != '\n') eol++;
+            if (eol > p && buf.get(p) != '#') {
+                long cand = longDigits(buf, p, eol);
+                int q = nextField(buf, p, eol);
+                long qid = digits(buf, q);
+                int r = nextField(buf, q, eol);
+
+                int slot = (int)qid - baseId;
+                if (cand < 0 || q >= eol || slot < 0 || slot >= canonical.length || canonical[slot] == 0) {
+                    t.unknown++;
+                } else {
+                    int len = copy(buf, r, trimCr(buf, eol), scratch);
+                    if (len < 0) {
+                        t.overlong++;
+                    } else {
+                        boolean correct = AnswerForm.parse(scratch, 0, len) == canonical[slot];
+                        t.candidates.add(cand, correct ? points[slot] : 0, correct);
+                        t.responses++;
+                    }
+                }
+            }
+            p = eol + 1;
+        }
+        return t;
+    }
+
+    /** Per-candidate results plus counters; one per worker, merged at the end. */
+    static class Totals {
+        final CandidateTable candidates = new CandidateTable();
+        long responses;
+        long unknown;
+        long overlong;
+
+        void merge(Totals o) {
+            responses += o.responses;
+            unknown += o.unknown;
+            overlong += o.overlong;
+            CandidateTable c = o.candidates;
+            for (int i = 0; i < c.keys.length; i++) {
+                if (c.used[i]) candidates.addAll(c.keys[i], c.answered[i], c.correct[i], c.score[i]);
+            }
+        }
+
+        void write(Path out) throws IOException {
+            CandidateTable c = candidates;
+            long[] ids = new long[c.size];
+            int n = 0;
+            for (int i = 0; i < c.keys.length; i++) if (c.used[i]) ids[n++] = c.keys[i];
+            Arrays.sort(ids);
+            try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+                w.write("# candidate\tanswered\tcorrect\tscore\n");
+                for (long id : ids) {
+                    int i = c.slot(id);
+                    w.write(id + "\t" + c.answered[i] + "\t" + c.correct[i] + "\t" + c.score[i] + "\n");
+                }
+            }
+        }
+    }
+
+    /** Open-addressing map from candidate id to running totals, no boxing. */
+    static class CandidateTable {
+        long[] keys = new long[1024];
+        boolean[] used = new boolean[1024];
+        int[] answered = new int[1024];
+        int[] correct = new int[1024];
+        long[] score = new long[1024];
+        int size;
+
+        void add(long id, int points, boolean ok) {
+            addAll(id, 1, ok ? 1 : 0, points);
+        }
+
+        void addAll(long id, int nAnswered, int nCorrect, long points) {
+            int i = slot(id);
+            if (!used[i]) {
+                if ((size + 1) * 2 > keys.length) {
+                    grow();
+                    i = slot(id);
+                }
+                used[i] = true;
+                keys[i] = id;
+                size++;
+            }
+            answered[i] += nAnswered;
+            correct[i] += nCorrect;
+            score[i] += points;
+        }
+
+        int slot(long id) {
+            int mask = keys.length - 1;
+            int i = (int)QuestionGenerator.mix64(id) & mask;
+            while (used[i] && keys[i] != id) i = (i + 1) & mask;
+            return i;
+        }
+
+        private void grow() {
+            long[] k = keys;
+            boolean[] u = used;
+            int[] a = answered, c = correct;
+            long[] s = score;
+            int cap = k.length * 2;
+            keys = new long[cap];
+            used = new boolean[cap];
+            answered = new int[cap];
+            correct = new int[cap];
+            score = new long[cap];
+            for (int j = 0; j < k.length; j++) {
+                if (!u[j]) continue;
+                int i = slot(k[j]);
+                used[i] = true;
+                keys[i] = k[j];
+                answered[i] = a[j];
+                correct[i] = c[j];
+                score[i] = s[j];
+            }
+        }
+    }
+
+    // ---- byte helpers ----
+
+    /** Splits a file into at least {@code parts} ranges that end on a newline and fit one mapping. */
+    static List<long[]> ranges(FileChannel ch, int parts) throws IOException {
+        long size = ch.size();
+        long target = Math.max(1, Math.min(MAX_RANGE, (size + parts - 1) / parts));
+        List<long[]> out = new ArrayList<>();
+        java.nio.ByteBuffer one = java.nio.ByteBuffer.allocate(1);
+        long from = 0;
+        while (from < size) {
+            long to = Math.min(size, from + target);
+            while (to < size) { // extend to just past the next newline
+                one.clear();
+                ch.read(one, to - 1);
+                if (one.get(0) == '\n') break;
+                to++;
+            }
+            if (to - from > Integer.MAX_VALUE) throw new IOException("Line longer than 1 GB");
+            out.add(new long[]{from, to});
+            from = to;
+        }
+        return out;
+    }
+
+    /** Unsigned int at p; returns (index after it << 32 | value). */
+    private static long digits(MappedByteBuffer buf, int p) {
+        int v = 0, end = buf.limit();
+        while (p < end) {
+            int c = buf.get(p) - '0';
+            if (c < 0 || c > 9) break;
+            v = v * 10 + c;
+            p++;
+        }
+        return ((long)p << 32) | (v & 0xffffffffL);
+    }
+
+    private static long longDigits(MappedByteBuffer buf, int p, int end) {
+        long v = 0;
+        int start = p;
+        while (p < end) {
+            int c = buf.get(p) - '0';
+            if (c < 0 || c > 9) break;
+            v = v * 10 + c;
+            p++;
+        }
+        return p == start ? -1 : v;
+    }
+
+    private static int nextField(MappedByteBuffer buf, int p, int end) {
+        while (p < end && buf.get(p) != '\t') p++;
+        return p + 1;
+    }
+
+    private static int trimCr(MappedByteBuffer buf, int eol) {
+        return eol > 0 && buf.get(eol - 1) == '\r' ? eol - 1 : eol;
+    }
+
+    /** Copies bytes [from, to) into scratch; -1 if they do not fit (never truncated). */
+    private static int copy(MappedByteBuffer buf, int from, int to, byte[] scratch) {
+        int len = Math.max(0, to - from);
+        if (len > scratch.length) return -1;
+        if (len > 0) buf.get(from, scratch, 0, len);
+        return len;
+    }
+}
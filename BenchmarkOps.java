@@ -0,0 +1,296 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The operations the benchmarks measure, by name
+ * - Used by the JMH harnesses in jmh/ (which look this class up by name:
+ *   JMH refuses benchmark classes in the default package, and a named
+ *   package cannot refer to the simulator's classes) and by the Benchmarks
+ *   smoke run, so both always cover the same ops
+ * - Each op returns a value derived from its work, for the caller's
+ *   Blackhole or checksum
+ * - Score ops work on a temporary history of a given number of lines,
+ *   deleted again by close()
+ */
+public final class BenchmarkOps {
+
+    /** Ops taking no size, in report order. */
+    static final List<String> NAMES;
+    /** Ops on a score history; created with its size in lines. */
+    static final List<String> SCORE_NAMES = List.of("importLegacy", "loadScoresFromFile", "saveScoresToFile",
+        "scores.newestPage", "scores.byCandidate");
+
+    static {
+        List<String> names = new ArrayList<>();
+        for (String tier : new String[]{"easy", "medium", "hard"}) {
+            for (int type = 0; type < 10; type++) names.add("generate/" + tier + "/" + type);
+        }
+        names.addAll(List.of("check/typical", "check/padded", "check/tuple-spaced", "check/adversarial-long",
+            "check/adversarial-unicode", "check/null", "factorial", "gcd", "fingerprint", "dedup.sessionFilter",
+            "dedup.cohortFilter", "next/raw", "next/dedup20", "next/dedup20+cohort", "session20/no-metrics",
+            "session20/metrics", "histogram.record", "histogram.record.shared", "irt.select/100000",
+            "irt.select/1000000", "irt.session30/100000", "irt.session30/1000000", "timer.wheel.scheduleCancel",
+            "timer.stpe.scheduleCancel"));
+        NAMES = Collections.unmodifiableList(names);
+    }
+
+    private BenchmarkOps() {
+    }
+
+    /** An op plus the resources it holds (timers, executors, files), released by close(). */
+    public static final class Op implements LongSupplier, Closeable {
+        private final LongSupplier body;
+        private final Closeable resource;
+
+        Op(LongSupplier body, Closeable resource) {
+            this.body = body;
+            this.resource = resource;
+        }
+
+        @Override
+        public long getAsLong() {
+            return body.getAsLong();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (resource != null) resource.close();
+        }
+    }
+
+    private interface IoBody {
+        long run() throws IOException;
+    }
+
+    private static LongSupplier io(IoBody body) {
+        return () -> {
+            try {
+                return body.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static final ExamMetrics SHARED_METRICS = new ExamMetrics();
+
+    /** A fresh op by name (each JMH state gets its own fixtures). */
+    public static Op create(String name) {
+        QuestionGenerator gen = new QuestionGenerator(new SplittableRandom(42), new QuestionGenerator.IdSequence(0));
+        AMCATSimulator.Question numeric = gen.generateHardQuestion(9);
+        AMCATSimulator.Question tuple = gen.generateMediumQuestion(1);
+        SplittableRandom r = new SplittableRandom(44);
+        if (name.startsWith("generate/")) {
+            String[] parts = name.split("/");
+            int type = Integer.parseInt(parts[2]);
+            switch (parts[1]) {
+                case "easy": return new Op(() -> gen.generateEasyQuestion(type).id, null);
+                case "medium": return new Op(() -> gen.generateMediumQuestion(type).id, null);
+                case "hard": return new Op(() -> gen.generateHardQuestion(type).id, null);
+                default: throw new IllegalArgumentException("Unknown op: " + name);
+            }
+        }
+        if (name.startsWith("irt.")) return irt(name);
+        switch (name) {
+            case "check/typical":
+                return new Op(() -> numeric.check(numeric.answer()) ? 1 : 0, null);
+            case "check/padded": {
+                String spaced = "   " + numeric.answer().toUpperCase() + "   ";
+                return new Op(() -> numeric.check(spaced) ? 1 : 0, null);
+            }
+            case "check/tuple-spaced": {
+                String spaced = tuple.answer().replace(",", ", ");
+                return new Op(() -> tuple.check(spaced) ? 1 : 0, null);
+            }
+            case "check/adversarial-long": {
+                String huge = " ".repeat(10_000) + "x".repeat(10_000);
+                return new Op(() -> numeric.check(huge) ? 1 : 0, null);
+            }
+            case "check/adversarial-unicode": {
+                String unicode = "İßΣ".repeat(200);
+                return new Op(() -> numeric.check(unicode) ? 1 : 0, null);
+            }
+            case "check/null":
+                return new Op(() -> numeric.check(null) ? 1 : 0, null);
+            case "factorial": {
+                int[] small = {4, 7, 10, 12};
+                return new Op(() -> {
+                    long s = 0;
+                    for (int n : small) s += QuestionGenerator.factorial(n);
+                    return s;
+                }, null);
+            }
+            case "gcd":
+                return new Op(() -> QuestionGenerator.gcd(1_234_567, 7_654_321) + QuestionGenerator.gcd(48, 180), null);
+            case "fingerprint":
+                return new Op(numeric::fingerprint, null);
+            case "dedup.sessionFilter":
+                return new Op(() -> {
+                    DedupQuestionSource.SessionFilter f =
+                        new DedupQuestionSource.SessionFilter(DedupQuestionSource.SessionFilter.DEFAULT_BITS);
+                    long hits = 0;
+                    for (int i = 0; i < 20; i++) {
+                        long fp = r.nextLong();
+                        if (f.mightContain(fp)) hits++;
+                        else f.add(fp);
+                    }
+                    return hits;
+                }, null);
+            case "dedup.cohortFilter": {
+                DedupQuestionSource.CohortFilter cohort = new DedupQuestionSource.CohortFilter(1 << 20);
+                return new Op(() -> cohort.add(r.nextLong()) ? 1 : 0, null);
+            }
+            case "next/raw":
+                return new Op(() -> gen.next(2).id, null);
+            case "next/dedup20": // one 20-question session, session filter only
+            case "next/dedup20+cohort": { // cohort keeps growing: worst case, fully exhausted item space
+                DedupQuestionSource.CohortFilter cohort = name.endsWith("cohort")
+                    ? new DedupQuestionSource.CohortFilter(1 << 20) : null;
+                return new Op(() -> {
+                    DedupQuestionSource src = new DedupQuestionSource(gen, cohort);
+                    long s = 0;
+                    for (int i = 0; i < 20; i++) s += src.next(2).id;
+                    return s;
+                }, null);
+            }
+            // the whole session loop with and without instrumentation; the gap is the metrics overhead
+            case "session20/no-metrics":
+                return new Op(() -> runSession(gen, null), null);
+            case "session20/metrics": {
+                ExamMetrics metrics = new ExamMetrics();
+                return new Op(() -> runSession(gen, metrics), null);
+            }
+            case "histogram.record": {
+                ExamMetrics.Histogram h = new ExamMetrics.Histogram();
+                return new Op(() -> {
+                    h.record(r.nextInt(1 << 20));
+                    return 1;
+                }, null);
+            }
+            case "histogram.record.shared": // one histogram for every calling thread
+                return new Op(() -> {
+                    SHARED_METRICS.overshoot().record(ThreadLocalRandom.current().nextInt(1 << 20));
+                    return 1;
+                }, null);
+            // arm and cancel one question deadline while 100k others are pending (the server's pattern)
+            case "timer.wheel.scheduleCancel": {
+                TimingWheel wheel = new TimingWheel(1_000_000, "bench-wheel");
+                long minute = TimeUnit.MINUTES.toNanos(1);
+                Runnable noop = () -> { };
+                for (int i = 0; i < 100_000; i++) wheel.schedule(minute + r.nextLong(minute), noop);
+                return new Op(() -> wheel.schedule(r.nextLong(minute), noop).cancel() ? 1 : 0, wheel);
+            }
+            case "timer.stpe.scheduleCancel": {
+                ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(1);
+                stpe.setRemoveOnCancelPolicy(true);
+                long minute = TimeUnit.MINUTES.toNanos(1);
+                Runnable noop = () -> { };
+                for (int i = 0; i < 100_000; i++) stpe.schedule(noop, minute + r.nextLong(minute), TimeUnit.NANOSECONDS);
+                return new Op(() -> stpe.schedule(noop, r.nextLong(minute), TimeUnit.NANOSECONDS).cancel(false) ? 1 : 0,
+                    stpe::shutdownNow);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown op: " + name);
+        }
+    }
+
+    static long runSession(QuestionSource source, ExamMetrics metrics) {
+        ExamSession session = new ExamSession(new AdaptivePolicy.Streak(source), 20, 60_000, metrics);
+        AMCATSimulator.Question q;
+        long s = 0;
+        while ((q = session.next()) != null) s += session.answer((q.id & 1) == 0 ? q.answer() : "?").points;
+        return s;
+    }
+
+    /** irt.select/N or irt.session30/N over N random items. */
+    private static Op irt(String name) {
+        int items = Integer.parseInt(name.substring(name.indexOf('/') + 1));
+        SplittableRandom r = new SplittableRandom(7);
+        float[] a = new float[items];
+        float[] b = new float[items];
+        for (int i = 0; i < items; i++) {
+            a[i] = (float)(0.6 + r.nextDouble());
+            b[i] = (float)(r.nextDouble() * 8 - 4);
+        }
+        ItemPool pool = new ItemPool(null, a, b);
+        if (name.startsWith("irt.select/")) return new Op(() -> pool.select(r.nextDouble() * 6 - 3, pos -> false, r), null);
+        if (!name.startsWith("irt.session30/")) throw new IllegalArgumentException("Unknown op: " + name);
+        return new Op(() -> {
+            IrtPolicy policy = new IrtPolicy(pool, r);
+            double truth = r.nextDouble() * 4 - 2;
+            for (int i = 0; i < 30; i++) {
+                int pos = policy.nextPosition();
+                policy.record(null, r.nextDouble() < ItemPool.probability(pool.a(pos), pool.b(pos), truth));
+            }
+            return policy.level();
+        }, null);
+    }
+
+    /** A score op over a fresh history of {@code lines} legacy lines, imported into a binary store. */
+    public static Op create(String name, long lines) throws IOException {
+        if (!SCORE_NAMES.contains(name)) throw new IllegalArgumentException("Unknown op: " + name);
+        Path dir = Files.createTempDirectory("amcat-bench");
+        Path legacy = dir.resolve("scores.txt");
+        Path imported = Paths.get(legacy + ".imported");
+        try (BufferedWriter w = Files.newBufferedWriter(legacy)) {
+            for (long i = 0; i < lines; i++) {
+                w.write("TimedExam | score: " + (i % 120) + " | date: Thu Oct 16 10:15:30 IST 2025");
+                w.newLine();
+            }
+        }
+        Path store = dir.resolve("scores.dat");
+        Path index = Paths.get(store + ".idx");
+        try (ScoreStore s = ScoreStore.open(store)) {
+            s.importLegacy(legacy);
+        }
+        PrintStream console = System.out;
+        AMCATSimulator app = new AMCATSimulator(0);
+        app.scoreFile = store.toString();
+        app.legacyScoreFile = legacy.toString(); // already imported, so never re-read
+        ScoreStore[] open = {null};
+        Closeable cleanup = () -> {
+            System.setOut(console);
+            app.closeScores();
+            if (open[0] != null) open[0].close();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) Files.delete(f);
+            }
+            Files.delete(dir);
+        };
+        switch (name) {
+            case "importLegacy": // the whole one-time conversion, from the text file to a new store
+                return new Op(io(() -> {
+                    Files.move(imported, legacy, StandardCopyOption.REPLACE_EXISTING);
+                    Files.delete(store);
+                    Files.delete(index);
+                    try (ScoreStore s = ScoreStore.open(store)) {
+                        return s.importLegacy(legacy);
+                    }
+                }), cleanup);
+            case "loadScoresFromFile":
+                System.setOut(new PrintStream(OutputStream.nullOutputStream())); // the app reports to the console
+                return new Op(io(() -> {
+                    app.loadScoresFromFile(); // O(1) open of the binary store
+                    app.closeScores();
+                    return 1;
+                }), cleanup);
+            case "saveScoresToFile":
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                app.loadScoresFromFile();
+                return new Op(() -> {
+                    app.saveScoresToFile();
+                    return 1;
+                }, cleanup);
+            default:
+                open[0] = ScoreStore.open(store);
+                ScoreStore s = open[0];
+                return name.equals("scores.newestPage") ? new Op(io(() -> s.newest(0, 10).size()), cleanup)
+                    : new Op(io(() -> s.byCandidate(12345, 10).size()), cleanup);
+        }
+    }
+}
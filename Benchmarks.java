@@ -0,0 +1,69 @@
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Quick smoke run of every BenchmarkOps op with plain javac
+ * - Checks each op runs and gives a rough ns/op in one JVM, in seconds;
+ *   for numbers worth quoting use the JMH module in jmh/ (forks, warm-up
+ *   iterations, Blackhole, error bounds) over the same ops
+ * - The clock is read once per batch of about 1 ms, so nanoTime() cost
+ *   stays out of ns/op; results go to a volatile checksum
+ * - Score ops run on histories of 1k lines and maxScoreLines
+ *
+ * Usage: java Benchmarks [name-filter] [millisPerOp=100] [maxScoreLines=100000]
+ */
+public class Benchmarks {
+
+    private static volatile long sink; // checksum of every result, so the JIT cannot drop the work
+    private static final PrintStream out = System.out; // score ops silence System.out while they run
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 100;
+        long maxLines = args.length > 2 ? Long.parseLong(args[2]) : 100_000;
+
+        out.printf("%-40s\t%14s\t%12s%n", "op", "ops/s", "ns/op");
+        for (String name : BenchmarkOps.NAMES) {
+            if (!name.contains(filter)) continue;
+            try (BenchmarkOps.Op op = BenchmarkOps.create(name)) {
+                run(name, op, millis);
+            }
+        }
+        long[] sizes = maxLines > 1_000 ? new long[]{1_000, maxLines} : new long[]{maxLines};
+        for (String name : BenchmarkOps.SCORE_NAMES) {
+            for (long lines : sizes) {
+                String label = name + "/" + lines;
+                if (!label.contains(filter)) continue;
+                try (BenchmarkOps.Op op = BenchmarkOps.create(name, lines)) {
+                    run(label, op, millis);
+                }
+            }
+        }
+    }
+
+    static void run(String name, BenchmarkOps.Op op, long millis) {
+        // warm up for half the window, growing the batch until one takes about 1 ms
+        long acc = 0;
+        int batch = 1;
+        long warmupEnd = System.nanoTime() + millis * 1_000_000L / 2;
+        long t;
+        do {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < batch; i++) acc += op.getAsLong();
+            t = System.nanoTime();
+            if (t - t0 < 1_000_000L && batch < 1 << 30) batch <<= 1;
+        } while (t < warmupEnd);
+
+        long ops = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000L;
+        long now;
+        do {
+            for (int i = 0; i < batch; i++) acc = acc * 31 + op.getAsLong();
+            ops += batch;
+            now = System.nanoTime();
+        } while (now < end);
+        sink = acc;
+        out.printf("%-40s\t%14.1f\t%12.1f%n", name, ops / ((now - start) / 1e9), (now - start) / (double)ops);
+    }
+}
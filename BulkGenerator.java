@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Non-interactive bulk paper generation
+ * - Questions are produced chunk by chunk on a ForkJoinPool, cycling through
+ *   easy/medium/hard, and streamed to a FileChannel in order
+ * - Only two chunks are ever in memory (one being written, one being
+ *   generated), so memory stays flat whatever the count
+ * - Each slice has its own seeded generator and ID range, so the output
+ *   depends only on the seed, never on the number of cores
+ *
+ * Output is one question per line, tab separated:
+ *   id  difficulty  type  prompt  options (joined by '|', empty if none)  answer
+ *
+ * Usage: java BulkGenerator <count> <out-file> [seed]
+ */
+public class BulkGenerator {
+
+    static final String HEADER = "# id\tdifficulty\ttype\tprompt\toptions\tanswer\n";
+
+    private static final int SLICE = 4096;            // questions per fork-join leaf
+    private static final int SLICES_PER_CHUNK = 64;   // ~256k questions per write
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java BulkGenerator <count> <out-file> [seed]");
+            return;
+        }
+        long count = Long.parseLong(args[0]);
+        Path out = Paths.get(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        long start = System.nanoTime();
+        generate(count, out, seed, ForkJoinPool.commonPool());
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Wrote %d questions to %s in %.2f s (%.0f questions/s), seed %d%n",
+            count, out, seconds, count / seconds, seed);
+    }
+
+    static void generate(long count, Path out, long seed, ForkJoinPool pool) throws IOException {
+        long slices = (count + SLICE - 1) / SLICE;
+        try (FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(ch, ByteBuffer.wrap(HEADER.getBytes(StandardCharsets.UTF_8)));
+
+            Future<byte[][]> pending = slices > 0 ? pool.submit(new Chunk(0, slices, count, seed)) : null;
+            for (long first = 0; pending != null; first += SLICES_PER_CHUNK) {
+                byte[][] ready = join(pending);
+                long nextFirst = first + SLICES_PER_CHUNK;
+                pending = nextFirst < slices ? pool.submit(new Chunk(nextFirst, slices, count, seed)) : null;
+                for (byte[] part : ready) writeFully(ch, ByteBuffer.wrap(part));
+            }
+        }
+    }
+
+    /** One chunk of slices, generated in parallel and returned in slice order. */
+    private static class Chunk extends RecursiveTask<byte[][]> {
+        private static final long serialVersionUID = 1L;
+
+        private final long firstSlice;
+        private final int n;
+        private final long count;
+        private final long seed;
+
+        Chunk(long firstSlice, long totalSlices, long count, long seed) {
+            this.firstSlice = firstSlice;
+            this.n = (int)Math.min(SLICES_PER_CHUNK, totalSlices - firstSlice);
+            this.count = count;
+            this.seed = seed;
+        }
+
+        @Override
+        protected byte[][] compute() {
+            List<ForkJoinTask<byte[]>> tasks = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                long slice = firstSlice + i;
+                tasks.add(ForkJoinTask.adapt(() -> generateSlice(slice, count, seed)));
+            }
+            invokeAll(tasks);
+            byte[][] parts = new byte[n][];
+            for (int i = 0; i < n; i++) parts[i] = tasks.get(i).join();
+            return parts;
+        }
+    }
+
+    static byte[] generateSlice(long slice, long count, long seed) {
+        long from = slice * SLICE;
+        // slice-local IDs keep the file byte-identical for the same seed
+        QuestionGenerator gen = new QuestionGenerator(
+            new SplittableRandom(QuestionGenerator.seedFor(seed, "bulk-" + slice)),
+            new QuestionGenerator.IdSequence((int)(1000 + from)));
+        long to = Math.min(count, from + SLICE);
+        StringBuilder sb = new StringBuilder((int)(to - from) * 128);
+        for (long i = from; i < to; i++) {
+            int tier = (int)(i % 3) + 1;
+            appendRecord(sb, gen.generateRandomQuestion(tier));
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void appendRecord(StringBuilder sb, AMCATSimulator.Question q) {
+        sb.append(q.id).append('\t').append(q.difficulty).append('\t').append(q.type).append('\t');
+        try {
+            q.template.render(q.params, sb); // straight into the slice buffer, no prompt string
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        sb.append('\t');
+        String[] options = q.options();
+        if (options != null) {
+            for (int i = 0; i < options.length; i++) {
+                if (i > 0) sb.append('|');
+                sb.append(options[i]);
+            }
+        }
+        sb.append('\t').append(q.answer()).append('\n');
+    }
+
+    private static byte[][] join(Future<byte[][]> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Generation failed", e.getCause());
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+}
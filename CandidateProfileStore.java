@@ -0,0 +1,727 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Persistent per-candidate profile: level reached, ability estimate,
+ * accuracy per topic and recent scores, kept between sessions
+ * - profiles.dat is an open-addressing hash table of fixed 128-byte slots
+ *   keyed by candidate id (linear probing, load kept under 70%), so a
+ *   lookup is one or two positional reads and nothing about the table is
+ *   held in memory
+ * - A full table doubles in the background: new and changed profiles go to
+ *   profiles.dat.grow, lookups probe it and then the old file (read-only
+ *   meanwhile), and a grower thread copies the old slots over a chunk at a
+ *   time before the new file replaces the old one. A growth interrupted by
+ *   a crash or close() resumes on the next open
+ * - In front of it sits a bounded LRU cache split into stripes, each an
+ *   access-ordered LinkedHashMap behind its own lock; a profile is loaded
+ *   lazily on first access and a full stripe drops its least recently used
+ *   entry, so heap use follows the cache size, never the number of
+ *   registered candidates
+ * - update() changes a copy and writes its slot straight through before
+ *   caching it: an evicted profile is never dirty and the next load sees
+ *   the last update. Disk reads and writes run outside the stripe locks,
+ *   under one of KEY_LOCKS per-candidate locks, so they only ever hold up
+ *   the same candidate (or one sharing its lock). force()/close() make the
+ *   file durable
+ *
+ * profiles.dat : 32-byte header magic(int) version(int) slots(long) count(long) reserved(long),
+ *                then slots of candidate(long, 0 = free) lastSeen(long) theta(float) exams(int)
+ *                level(byte) reserved(3 bytes) recentScores(8 x short) asked(10 x int)
+ *                correct(10 x int) bestScore(int)   (per-topic counts in Topic order)
+ *
+ * Usage: java CandidateProfileStore show <file> <candidate>
+ *        java CandidateProfileStore bench <file> <candidates> [lookups=2000000] [cacheSize=100000] [threads=4]
+ */
+public class CandidateProfileStore implements Closeable {
+
+    static final int MAGIC = 0x50524631; // "PRF1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SLOT_SIZE = 128;
+    static final int TOPICS = Topic.values().length;
+
+    private static final int MIN_SLOTS = 1024;
+    private static final int MAX_LOAD_PERCENT = 70;
+    private static final int STRIPES = 16;
+    private static final int KEY_LOCKS = 1024;
+    private static final int GROW_CHUNK = 256; // old slots copied per hold of the table's write lock
+
+    /** One candidate's history; copies are handed out, the cached instance is never shared. */
+    static class Profile {
+        static final int RECENT = 8;
+
+        final long candidate;
+        long lastSeen;  // epoch millis of the last finished exam
+        float theta;    // ability estimate (IRT theta, or the level's nominal theta for streak exams)
+        int exams;
+        int level = 2;  // difficulty reached at the end of the last exam
+        int bestScore;
+        final short[] recent = new short[RECENT]; // ring of scores, exams % RECENT is the next slot
+        final int[] asked = new int[TOPICS];
+        final int[] correct = new int[TOPICS];
+
+        Profile(long candidate) {
+            this.candidate = candidate;
+        }
+
+        boolean isNew() {
+            return exams == 0;
+        }
+
+        void recordAnswer(Topic topic, boolean ok) {
+            asked[topic.ordinal()]++;
+            if (ok) correct[topic.ordinal()]++;
+        }
+
+        void recordExam(int score, int finalLevel, double finalTheta, long when) {
+            recent[exams % RECENT] = (short)Math.min(Short.MAX_VALUE, score);
+            exams++;
+            bestScore = Math.max(bestScore, score);
+            level = finalLevel;
+            theta = (float)finalTheta;
+            lastSeen = when;
+        }
+
+        /** Up to RECENT scores, newest first. */
+        int[] recentScores() {
+            int n = Math.min(exams, RECENT);
+            int[] out = new int[n];
+            for (int i = 0; i < n; i++) out[i] = recent[Math.floorMod(exams - 1 - i, RECENT)];
+            return out;
+        }
+
+        double accuracy(Topic topic) {
+            int n = asked[topic.ordinal()];
+            return n == 0 ? Double.NaN : (double)correct[topic.ordinal()] / n;
+        }
+
+        /** Topic with the lowest accuracy among those asked at least {@code minAsked} times, or null. */
+        Topic weakestTopic(int minAsked) {
+            Topic weakest = null;
+            for (Topic t : Topic.values()) {
+                if (asked[t.ordinal()] >= minAsked && (weakest == null || accuracy(t) < accuracy(weakest))) weakest = t;
+            }
+            return weakest;
+        }
+
+        Profile copy() {
+            Profile p = new Profile(candidate);
+            p.lastSeen = lastSeen;
+            p.theta = theta;
+            p.exams = exams;
+            p.level = level;
+            p.bestScore = bestScore;
+            System.arraycopy(recent, 0, p.recent, 0, RECENT);
+            System.arraycopy(asked, 0, p.asked, 0, TOPICS);
+            System.arraycopy(correct, 0, p.correct, 0, TOPICS);
+            return p;
+        }
+
+        void write(ByteBuffer b) {
+            b.putLong(candidate).putLong(lastSeen).putFloat(theta).putInt(exams)
+                .put((byte)level).put((byte)0).putShort((short)0);
+            for (short s : recent) b.putShort(s);
+            for (int n : asked) b.putInt(n);
+            for (int n : correct) b.putInt(n);
+            b.putInt(bestScore);
+        }
+
+        static Profile read(ByteBuffer b) {
+            Profile p = new Profile(b.getLong());
+            p.lastSeen = b.getLong();
+            p.theta = b.getFloat();
+            p.exams = b.getInt();
+            p.level = b.get();
+            b.position(b.position() + 3);
+            for (int i = 0; i < RECENT; i++) p.recent[i] = b.getShort();
+            for (int i = 0; i < TOPICS; i++) p.asked[i] = b.getInt();
+            for (int i = 0; i < TOPICS; i++) p.correct[i] = b.getInt();
+            p.bestScore = b.getInt();
+            return p;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("candidate %d: %d exams, best %d, last level %s, theta %.2f",
+                candidate, exams, bestScore, AMCATSimulator.diffName(level), theta));
+            if (exams > 0) sb.append(", last seen ").append(new Date(lastSeen));
+            sb.append("\n  recent scores ").append(Arrays.toString(recentScores()));
+            for (Topic t : Topic.values()) {
+                int n = asked[t.ordinal()];
+                if (n > 0) sb.append(String.format("%n  %-26s %5d asked  %5.1f%% correct", t.label, n, 100 * accuracy(t)));
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Nominal ability of a difficulty tier, on the same scale as item difficulty b. */
+    static double levelTheta(int level) {
+        return (level - 2) * 1.5;
+    }
+
+    /** One cache stripe: LRU by access order, bounded; guarded by its own monitor. */
+    private static final class Stripe extends LinkedHashMap<Long, Profile> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+        private final transient LongAdder evictions;
+
+        Stripe(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Profile> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    private final Path path;
+    private final Stripe[] stripes;
+    private final Object[] keyLocks = new Object[KEY_LOCKS]; // serialize loads and updates of one candidate
+    private final int cacheSize;
+    private final ReentrantReadWriteLock table = new ReentrantReadWriteLock(); // write lock for inserts and growth steps
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // guarded by table
+    private FileChannel channel; // the table inserts go to (profiles.dat.grow while growing)
+    private long slots;
+    private long count;          // candidates in the table, including those still only in the old file
+    private FileChannel old;     // the table being grown out of, read-only; null when not growing
+    private long oldSlots;
+    private long copied;         // old slots copied so far
+    private final ByteBuffer insertChunk = ByteBuffer.allocate(GROW_CHUNK * SLOT_SIZE);
+    private boolean closed;
+
+    private CandidateProfileStore(Path path, FileChannel channel, long slots, long count, int cacheSize) {
+        this.path = path;
+        this.channel = channel;
+        this.slots = slots;
+        this.count = count;
+        this.cacheSize = Math.max(1, cacheSize);
+        int n = Math.min(STRIPES, Integer.highestOneBit(this.cacheSize));
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) stripes[i] = new Stripe((this.cacheSize + n - 1) / n, evictions);
+        for (int i = 0; i < KEY_LOCKS; i++) keyLocks[i] = new Object();
+    }
+
+    static CandidateProfileStore open(Path path, int cacheSize) throws IOException {
+        return open(path, cacheSize, 0);
+    }
+
+    /** Opens or creates the store; a new file is sized for {@code expectedCandidates} up front. */
+    static CandidateProfileStore open(Path path, int cacheSize, long expectedCandidates) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        FileChannel grown = null;
+        try {
+            if (ch.size() == 0) {
+                long slots = slotsFor(expectedCandidates);
+                initialize(ch, slots);
+                return new CandidateProfileStore(path, ch, slots, 0, cacheSize);
+            }
+            ByteBuffer head = header(ch, path);
+            Path growPath = growPath(path);
+            if (Files.exists(growPath)) { // a growth was under way: finish it
+                grown = FileChannel.open(growPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                ByteBuffer growHead;
+                try {
+                    growHead = header(grown, growPath);
+                } catch (IOException e) { // never got past initialize(): nothing was written to it
+                    grown.close();
+                    grown = null;
+                    Files.delete(growPath);
+                    return new CandidateProfileStore(path, ch, head.getLong(8), head.getLong(16), cacheSize);
+                }
+                CandidateProfileStore store = new CandidateProfileStore(path, grown, growHead.getLong(8),
+                    growHead.getLong(16), cacheSize);
+                store.old = ch;
+                store.oldSlots = head.getLong(8);
+                store.startGrower();
+                return store;
+            }
+            return new CandidateProfileStore(path, ch, head.getLong(8), head.getLong(16), cacheSize);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            if (grown != null) grown.close();
+            throw e;
+        }
+    }
+
+    /** Reads and checks a table file's header. */
+    private static ByteBuffer header(FileChannel ch, Path path) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+        if (ch.size() < HEADER_SIZE) throw new IOException("Truncated profile store: " + path);
+        readFully(ch, head, 0);
+        if (head.getInt(0) != MAGIC) throw new IOException("Not a profile store: " + path);
+        if (head.getInt(4) != VERSION) throw new IOException("Unsupported profile store version " + head.getInt(4));
+        long slots = head.getLong(8);
+        if (Long.bitCount(slots) != 1 || ch.size() < HEADER_SIZE + slots * SLOT_SIZE) {
+            throw new IOException("Truncated profile store: " + path);
+        }
+        return head;
+    }
+
+    private static Path growPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".grow");
+    }
+
+    private static long slotsFor(long candidates) {
+        long needed = Math.max(MIN_SLOTS, candidates * 100 / MAX_LOAD_PERCENT + 1);
+        return Long.highestOneBit(needed - 1) << 1;
+    }
+
+    /** Writes the header and extends the file (sparse, so free slots read as zeros). */
+    private static void initialize(FileChannel ch, long slots) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+        head.putInt(MAGIC).putInt(VERSION).putLong(slots).putLong(0).putLong(0).flip();
+        writeFully(ch, head, 0);
+        writeFully(ch, ByteBuffer.allocate(1), HEADER_SIZE + slots * SLOT_SIZE - 1);
+    }
+
+    // ---- cache ----
+
+    private Stripe stripe(long candidate) {
+        return stripes[(int)(QuestionGenerator.mix64(candidate) >>> 40) & (stripes.length - 1)];
+    }
+
+    private Object keyLock(long candidate) {
+        return keyLocks[(int)QuestionGenerator.mix64(candidate) & (KEY_LOCKS - 1)];
+    }
+
+    /** The candidate's profile (a fresh one if never seen); served from the cache after the first access. */
+    Profile get(long candidate) throws IOException {
+        Stripe s = stripe(candidate);
+        synchronized (s) {
+            Profile p = s.get(candidate);
+            if (p != null) {
+                hits.increment();
+                return p.copy();
+            }
+        }
+        synchronized (keyLock(candidate)) {
+            return cached(s, candidate).copy();
+        }
+    }
+
+    /**
+     * Applies {@code change} to the candidate's profile, writes it through to
+     * disk and returns the new state; updates to one candidate are serialized.
+     */
+    Profile update(long candidate, Consumer<Profile> change) throws IOException {
+        if (candidate == 0) throw new IllegalArgumentException("Guests (candidate 0) have no profile");
+        Stripe s = stripe(candidate);
+        synchronized (keyLock(candidate)) {
+            Profile next = cached(s, candidate).copy();
+            change.accept(next);
+            write(next); // a failed write leaves the cached state as it was
+            synchronized (s) {
+                s.put(candidate, next);
+            }
+            return next.copy();
+        }
+    }
+
+    /**
+     * The cached instance, loaded on a miss with only the candidate's key lock
+     * held (which the caller holds): nobody else can load or change it meanwhile.
+     */
+    private Profile cached(Stripe s, long candidate) throws IOException {
+        synchronized (s) {
+            Profile p = s.get(candidate);
+            if (p != null) {
+                hits.increment();
+                return p;
+            }
+        }
+        misses.increment();
+        Profile p = load(candidate);
+        synchronized (s) {
+            s.put(candidate, p);
+        }
+        return p;
+    }
+
+    long hits() { return hits.sum(); }
+    long misses() { return misses.sum(); }
+    long evictions() { return evictions.sum(); }
+
+    int cached() {
+        int n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += s.size();
+            }
+        }
+        return n;
+    }
+
+    int cacheSize() { return cacheSize; }
+
+    // ---- table ----
+
+    long size() {
+        table.readLock().lock();
+        try {
+            return count;
+        } finally {
+            table.readLock().unlock();
+        }
+    }
+
+    private Profile load(long candidate) throws IOException {
+        ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+        table.readLock().lock();
+        try {
+            if (probe(channel, slots, candidate, slot) >= 0) return Profile.read(slot.rewind());
+            if (old != null && probe(old, oldSlots, candidate, slot) >= 0) return Profile.read(slot.rewind());
+            return new Profile(candidate);
+        } finally {
+            table.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the profile to its slot, claiming a free one for a candidate not
+     * yet in the (new) table; a full table starts growing.
+     */
+    private void write(Profile p) throws IOException {
+        ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+        table.readLock().lock();
+        try {
+            long at = probe(channel, slots, p.candidate, slot);
+            if (at >= 0) {
+                put(channel, at, p, slot);
+                return;
+            }
+        } finally {
+            table.readLock().unlock();
+        }
+        table.writeLock().lock();
+        try {
+            long at = probe(channel, slots, p.candidate, slot);
+            if (at < 0) {
+                boolean known = old != null && probe(old, oldSlots, p.candidate, slot) >= 0; // not copied over yet
+                if (!known && old == null && (count + 1) * 100 > slots * MAX_LOAD_PERCENT) {
+                    startGrowing();
+                    at = probe(channel, slots, p.candidate, slot);
+                }
+                at = -at - 1;
+                if (!known) {
+                    count++;
+                    writeFully(channel, ByteBuffer.allocate(8).putLong(0, count), 16);
+                }
+            }
+            put(channel, at, p, slot);
+            if (old != null && copied < oldSlots) { // inserts help the grower, so the copy finishes long before the new table fills
+                copyChunk(insertChunk, slot);
+            }
+        } finally {
+            table.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Slot holding {@code candidate} (its record left in {@code slot}), or
+     * -(first free slot) - 1 if the candidate is not in the table.
+     */
+    private static long probe(FileChannel ch, long slots, long candidate, ByteBuffer slot) throws IOException {
+        long mask = slots - 1;
+        for (long s = QuestionGenerator.mix64(candidate) & mask; ; s = (s + 1) & mask) {
+            slot.clear();
+            readFully(ch, slot, HEADER_SIZE + s * SLOT_SIZE);
+            long id = slot.getLong(0);
+            if (id == candidate) return s;
+            if (id == 0) return -s - 1;
+        }
+    }
+
+    private static void put(FileChannel ch, long at, Profile p, ByteBuffer slot) throws IOException {
+        slot.clear();
+        p.write(slot);
+        writeFully(ch, slot.flip(), HEADER_SIZE + at * SLOT_SIZE);
+    }
+
+    // ---- growth ----
+
+    /**
+     * Creates an empty table twice the size as profiles.dat.grow and sends
+     * inserts there from now on (caller holds the write lock). The header
+     * carries the full count and is synced before use, so a crash leaves
+     * either no usable .grow file or one to resume from.
+     */
+    private void startGrowing() throws IOException {
+        Path tmp = growPath(path);
+        long bigger = slots * 2;
+        FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            initialize(out, bigger);
+            writeFully(out, ByteBuffer.allocate(8).putLong(0, count), 16);
+            out.force(true);
+        } catch (IOException e) {
+            out.close();
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        old = channel;
+        oldSlots = slots;
+        copied = 0;
+        channel = out;
+        slots = bigger;
+        startGrower();
+    }
+
+    private void startGrower() {
+        Thread t = new Thread(this::growLoop, "profile-grower");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Copies the old table over GROW_CHUNK slots at a time, then swaps the new file in. */
+    private void growLoop() {
+        try {
+            ByteBuffer chunk = ByteBuffer.allocate(GROW_CHUNK * SLOT_SIZE);
+            ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+            while (true) {
+                table.writeLock().lock();
+                try {
+                    if (closed) return; // resumed on the next open
+                    if (copied == oldSlots) break;
+                    copyChunk(chunk, slot);
+                } finally {
+                    table.writeLock().unlock();
+                }
+            }
+            FileChannel grown;
+            table.readLock().lock();
+            try {
+                grown = channel;
+            } finally {
+                table.readLock().unlock();
+            }
+            grown.force(false); // the bulk of the sync, without blocking anyone
+            table.writeLock().lock();
+            try {
+                if (closed) return;
+                channel.force(false);
+                Files.move(growPath(path), path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                old.close();
+                old = null;
+            } finally {
+                table.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            table.readLock().lock();
+            try {
+                if (closed) return; // closed under us; resumed on the next open
+            } finally {
+                table.readLock().unlock();
+            }
+            System.out.println("Error growing profile store (lookups still use both tables): " + e.getMessage());
+        }
+    }
+
+    /** Copies the next GROW_CHUNK old slots into the new table (caller holds the write lock). */
+    private void copyChunk(ByteBuffer chunk, ByteBuffer slot) throws IOException {
+        chunk.clear().limit((int)Math.min(GROW_CHUNK, oldSlots - copied) * SLOT_SIZE);
+        readFully(old, chunk, HEADER_SIZE + copied * SLOT_SIZE);
+        for (int off = 0; off < chunk.limit(); off += SLOT_SIZE) {
+            long id = chunk.getLong(off);
+            if (id == 0) continue;
+            long at = probe(channel, slots, id, slot);
+            if (at >= 0) continue; // updated since the growth began: the new table's copy is newer
+            writeFully(channel, chunk.duplicate().position(off).limit(off + SLOT_SIZE), HEADER_SIZE + (-at - 1) * SLOT_SIZE);
+        }
+        copied += chunk.limit() / SLOT_SIZE;
+    }
+
+    /** Whether a growth is still copying the old table. */
+    boolean growing() {
+        table.readLock().lock();
+        try {
+            return old != null;
+        } finally {
+            table.readLock().unlock();
+        }
+    }
+
+    void force() throws IOException {
+        table.readLock().lock();
+        try {
+            channel.force(false);
+        } finally {
+            table.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        table.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            channel.force(true);
+            channel.close();
+            if (old != null) old.close();
+        } finally {
+            table.writeLock().unlock();
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            int n = ch.read(b, pos);
+            if (n < 0) throw new EOFException("Profile store ends early");
+            pos += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+    }
+
+    // ---- exam integration ----
+
+    /** Listener that folds one exam's answers and result into the candidate's profile when it finishes. */
+    ExamSession.Listener tracker(long candidate) {
+        return tracker(candidate, new int[TOPICS], new int[TOPICS]);
+    }
+
+    /**
+     * Tracker for a resumed exam: {@code asked} and {@code correct} (per topic)
+     * hold the answers given before the interruption, so they reach the profile too.
+     */
+    ExamSession.Listener tracker(long candidate, int[] askedBefore, int[] correctBefore) {
+        return new ExamSession.Listener() {
+            private final int[] asked = askedBefore.clone();
+            private final int[] correct = correctBefore.clone();
+
+            @Override
+            public void questionAsked(ExamSession session, AMCATSimulator.Question q) {
+            }
+
+            @Override
+            public void answered(ExamSession session, AMCATSimulator.Question q, ExamSession.Result result,
+                                 long latencyNanos) {
+                int t = Topic.of(q.difficulty, q.type).ordinal();
+                asked[t]++;
+                if (result.outcome == ExamSession.Outcome.CORRECT) correct[t]++;
+            }
+
+            @Override
+            public void finished(ExamSession session) {
+                AdaptivePolicy policy = session.policy();
+                double theta = policy instanceof IrtPolicy ? ((IrtPolicy)policy).theta()
+                    : levelTheta(session.currentDifficulty());
+                try {
+                    update(candidate, p -> {
+                        for (int i = 0; i < TOPICS; i++) {
+                            p.asked[i] += asked[i];
+                            p.correct[i] += correct[i];
+                        }
+                        p.recordExam(session.score(), session.currentDifficulty(), theta, System.currentTimeMillis());
+                    });
+                } catch (IOException e) {
+                    // the exam must still reach the score store and the journal: report, never throw into the session
+                    System.out.println("Error recording candidate profile: " + e.getMessage());
+                }
+            }
+        };
+    }
+
+    // ---- tool ----
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("show")) {
+            try (CandidateProfileStore store = open(Paths.get(args[1]), 1)) {
+                Profile p = store.get(Long.parseLong(args[2]));
+                System.out.println(p.isNew() ? "No profile for candidate " + p.candidate : p.toString());
+            }
+        } else if (args.length >= 3 && args[0].equals("bench")) {
+            long candidates = Long.parseLong(args[2]);
+            long lookups = args.length > 3 ? Long.parseLong(args[3]) : 2_000_000;
+            int cacheSize = args.length > 4 ? Integer.parseInt(args[4]) : 100_000;
+            int threads = args.length > 5 ? Integer.parseInt(args[5]) : 4;
+            bench(Paths.get(args[1]), candidates, lookups, cacheSize, threads);
+        } else {
+            System.out.println("Usage: java CandidateProfileStore show <file> <candidate>");
+            System.out.println("       java CandidateProfileStore bench <file> <candidates> [lookups] [cacheSize] [threads]");
+        }
+    }
+
+    /**
+     * Registers candidates 1..n with synthetic histories (if the file has fewer),
+     * then looks up skewed candidate ids from several threads.
+     */
+    static void bench(Path file, long candidates, long lookups, int cacheSize, int threads) throws Exception {
+        try (CandidateProfileStore store = open(file, cacheSize, candidates)) {
+            long t0 = System.nanoTime();
+            long have = store.size();
+            SplittableRandom rnd = new SplittableRandom(candidates);
+            for (long id = have + 1; id <= candidates; id++) {
+                Profile p = new Profile(id);
+                for (int e = 0, exams = 1 + rnd.nextInt(5); e < exams; e++) {
+                    for (int q = 0; q < 10; q++) p.recordAnswer(Topic.values()[rnd.nextInt(TOPICS)], rnd.nextBoolean());
+                    int level = 1 + rnd.nextInt(3);
+                    p.recordExam(rnd.nextInt(60), level, levelTheta(level), System.currentTimeMillis());
+                }
+                store.write(p);
+            }
+            if (have < candidates) {
+                System.out.printf("Registered %,d candidates in %.1f s%n", candidates - have, (System.nanoTime() - t0) / 1e9);
+            }
+            System.out.printf("Store: %,d candidates, %,d MB on disk; cache %,d profiles in %d stripes%n",
+                store.size(), Files.size(file) >> 20, cacheSize, store.stripes.length);
+
+            // a few percent of candidates account for most visits: id = n * u^4
+            long perThread = lookups / threads;
+            Thread[] workers = new Thread[threads];
+            long[] levels = new long[threads];
+            long start = System.nanoTime();
+            for (int w = 0; w < threads; w++) {
+                int me = w;
+                workers[w] = new Thread(() -> {
+                    ThreadLocalRandom r = ThreadLocalRandom.current();
+                    long s = 0;
+                    try {
+                        for (long i = 0; i < perThread; i++) {
+                            double u = r.nextDouble();
+                            long id = 1 + (long)(candidates * u * u * u * u);
+                            s += store.get(id).level;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    levels[me] = s;
+                });
+                workers[w].start();
+            }
+            for (Thread t : workers) t.join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long done = perThread * threads;
+            System.gc();
+            Runtime rt = Runtime.getRuntime();
+            System.out.printf("Lookups: %,d on %d threads in %.2f s (%.1fM/s, %.0f ns/lookup), mean level %.3f%n",
+                done, threads, seconds, done / seconds / 1e6, seconds * 1e9 / done,
+                (double)Arrays.stream(levels).sum() / Math.max(1, done));
+            System.out.printf("Cache: %.1f%% hits, %,d misses, %,d evictions, %,d cached; heap in use %d MB%n",
+                100.0 * store.hits() / (store.hits() + store.misses()), store.misses(), store.evictions(),
+                store.cached(), (rt.totalMemory() - rt.freeMemory()) >> 20);
+        }
+    }
+}
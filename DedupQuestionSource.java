@@ -0,0 +1,140 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Question source decorator that avoids repeats, keyed by Question.fingerprint
+ * - SessionFilter: small Bloom filter owned by one session, so the same
+ *   candidate is not asked an identical question twice
+ * - CohortFilter: blocked Bloom filter shared by every session of a cohort,
+ *   so items already served to someone else are avoided where possible
+ * - Both are probabilistic: a false positive only costs a redraw, never a
+ *   repeat, and memory is fixed (bits, not a set of prompt strings)
+ * - Redraws are bounded: a cohort repeat is only redrawn COHORT_REDRAWS
+ *   times (large cohorts exhaust the small parameter spaces, and that must
+ *   not multiply generation cost), a session repeat up to MAX_DRAWS times;
+ *   after that the last session-fresh draw, or failing that the last draw,
+ *   is accepted
+ */
+class DedupQuestionSource implements QuestionSource {
+
+    static final int MAX_DRAWS = 8;
+    static final int COHORT_REDRAWS = 2;
+
+    private final QuestionSource source;
+    private final SessionFilter seen;
+    private final CohortFilter cohort; // may be null
+    private long redraws;
+
+    DedupQuestionSource(QuestionSource source, CohortFilter cohort) {
+        this(source, new SessionFilter(SessionFilter.DEFAULT_BITS), cohort);
+    }
+
+    DedupQuestionSource(QuestionSource source, SessionFilter seen, CohortFilter cohort) {
+        this.source = source;
+        this.seen = seen;
+        this.cohort = cohort;
+    }
+
+    @Override
+    public AMCATSimulator.Question next(int difficulty) {
+        AMCATSimulator.Question fallback = null;
+        AMCATSimulator.Question q = null;
+        int cohortRepeats = 0;
+        for (int draw = 0; draw < MAX_DRAWS; draw++) {
+            q = source.next(difficulty);
+            if (seen.mightContain(q.fingerprint())) {
+                redraws++;
+                continue;
+            }
+            fallback = q;
+            if (cohort == null || cohort.add(q.fingerprint()) || cohortRepeats++ == COHORT_REDRAWS) break;
+            redraws++;
+        }
+        if (fallback != null) q = fallback;
+        seen.add(q.fingerprint());
+        return q;
+    }
+
+    /** Draws that were discarded as probable repeats. */
+    long redraws() {
+        return redraws;
+    }
+
+    /** Per-session Bloom filter with 3 probes; 4096 bits (512 bytes) hold 100 questions at ~0.04% false positives. */
+    static class SessionFilter {
+        static final int DEFAULT_BITS = 4096;
+
+        private final long[] words;
+        private final int mask;
+
+        SessionFilter(int bits) {
+            int n = Integer.highestOneBit(Math.max(64, bits - 1) << 1) >>> 6; // power-of-two words
+            this.words = new long[n];
+            this.mask = n * 64 - 1;
+        }
+
+        boolean mightContain(long fp) {
+            for (int i = 0; i < 3; i++) {
+                int bit = probe(fp, i) & mask;
+                if ((words[bit >>> 6] & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        void add(long fp) {
+            for (int i = 0; i < 3; i++) {
+                int bit = probe(fp, i) & mask;
+                words[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        private static int probe(long fp, int i) { // Kirsch-Mitzenmacher double hashing
+            return (int)fp + i * (int)(fp >>> 32);
+        }
+    }
+
+    /**
+     * Cohort-wide blocked Bloom filter, safe for any number of sessions
+     * - One 64-bit word (the stripe) is chosen from the high hash bits and all
+     *   probe bits live in that word, so a lookup touches one cache line and
+     *   an insert is a single CAS
+     * - Stripes are independent words, so concurrent sessions rarely collide
+     */
+    static class CohortFilter {
+        private final AtomicLongArray stripes;
+        private final int mask;
+
+        /** Sized in 64-bit stripes (rounded up to a power of two); 8 bits per expected item gives ~2% false positives. */
+        CohortFilter(int expectedItems) {
+            int n = Integer.highestOneBit(Math.max(1, expectedItems / 8 - 1) << 1);
+            this.stripes = new AtomicLongArray(n);
+            this.mask = n - 1;
+        }
+
+        /** Records fp and returns true if it was (probably) not there yet. */
+        boolean add(long fp) {
+            int stripe = (int)(fp >>> 40) & mask;
+            long bits = probeBits(fp);
+            long old = stripes.get(stripe);
+            while ((old & bits) != bits) {
+                long witness = stripes.compareAndExchange(stripe, old, old | bits);
+                if (witness == old) return true;
+                old = witness;
+            }
+            return false;
+        }
+
+        boolean mightContain(long fp) {
+            int stripe = (int)(fp >>> 40) & mask;
+            long bits = probeBits(fp);
+            return (stripes.get(stripe) & bits) == bits;
+        }
+
+        private static long probeBits(long fp) { // four 6-bit positions from the low hash bits
+            return (1L << fp) | (1L << (fp >>> 6)) | (1L << (fp >>> 12)) | (1L << (fp >>> 18));
+        }
+
+        long memoryBytes() {
+            return stripes.length() * 8L;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client for ExamServer
+ * - Interactive: relays stdin lines to the server and prints its replies
+ * - Bots: many simulated candidates over loopback (one virtual thread
+ *   each) that take a timed exam and report server turnaround latency,
+ *   i.e. answer sent -> next ANSWER prompt received
+ *
+ * Usage: java ExamClient [host=localhost] [port=7070]
+ *        java ExamClient --bots <count> [questions=10] [thinkMillis=20] [host] [port]
+ */
+public class ExamClient {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--bots")) {
+            int bots = Integer.parseInt(args[1]);
+            int questions = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            int thinkMillis = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+            String host = args.length > 4 ? args[4] : "localhost";
+            int port = args.length > 5 ? Integer.parseInt(args[5]) : 7070;
+            runBots(bots, questions, thinkMillis, host, port);
+            return;
+        }
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+        try (Socket socket = new Socket(host, port)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            Thread printer = new Thread(() -> {
+                try {
+                    String line;
+                    while ((line = in.readLine()) != null) System.out.println(line);
+                } catch (IOException e) {
+                    // connection closed
+                }
+                System.exit(0);
+            }, "server-reader");
+            printer.setDaemon(true);
+            printer.start();
+            BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+            String line;
+            while ((line = console.readLine()) != null) {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            }
+            printer.join(); // stdin ended: wait for the server to finish talking
+        }
+    }
+
+    static void runBots(int bots, int questions, int thinkMillis, String host, int port) throws InterruptedException {
+        long[] latencies = new long[bots * questions];
+        AtomicInteger recorded = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService ex = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int b = 0; b < bots; b++) {
+                ex.submit(() -> {
+                    try {
+                        if (bot(host, port, questions, thinkMillis, latencies, recorded)) finished.incrementAndGet();
+                        else failed.incrementAndGet();
+                    } catch (IOException | InterruptedException e) {
+                        failed.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int n = recorded.get();
+        Arrays.sort(latencies, 0, n);
+        System.out.printf("Bots: %d finished, %d failed, %d answers in %.2f s (%.0f answers/s)%n",
+            finished.get(), failed.get(), n, seconds, n / seconds);
+        System.out.printf("Server turnaround: p50=%.1f us  p99=%.1f us  max=%.1f us%n",
+            LoadGenerator.percentile(latencies, n, 0.50) / 1e3, LoadGenerator.percentile(latencies, n, 0.99) / 1e3,
+            n == 0 ? 0 : latencies[n - 1] / 1e3);
+    }
+
+    /** One simulated candidate; returns true if the exam ran to FINISHED. */
+    static boolean bot(String host, int port, int questions, int thinkMillis, long[] latencies,
+                       AtomicInteger recorded) throws IOException, InterruptedException {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write("START " + questions + " 10\n");
+            out.flush();
+            long sentAt = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("FINISHED")) return true;
+                if (!line.startsWith("ANSWER")) continue;
+                long now = System.nanoTime();
+                if (sentAt != 0) latencies[recorded.getAndIncrement()] = now - sentAt;
+                if (thinkMillis > 0) Thread.sleep(rnd.nextInt(thinkMillis) + 1);
+                out.write(rnd.nextBoolean() ? "A\n" : rnd.nextInt(100) + "\n");
+                out.flush();
+                sentAt = System.nanoTime();
+            }
+            return false;
+        }
+    }
+}
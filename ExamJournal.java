@@ -0,0 +1,424 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead journal of exam progress, so a crash never loses an exam
+ * - Every session logs START, then QUESTION and ANSWER per question, then
+ *   END once its score is safely in the ScoreStore
+ * - Appends only copy into an in-memory batch; one flusher thread writes
+ *   the batch and fsyncs it every syncMillis (group commit), so thousands
+ *   of concurrent sessions share a handful of syncs per second.
+ *   awaitDurable() blocks until a given append is on disk
+ * - Records are length + CRC32C framed; open() replays the file, stops at
+ *   the first torn or corrupt record and truncates it away
+ * - Sessions without END are returned by interrupted() so the caller can
+ *   resume or finalize them; checkpoint() empties the file once no session
+ *   is open
+ *
+ * Record: length(int) crc32c(int) kind(byte) session(long) time(long) body
+ *   START    paperSeed(long) numQuestions(int) totalMillis(long) policy(byte)
+ *            candidate(long) startLevel(byte)   (absent in older journals: guest, Medium)
+ *   QUESTION id(int) difficulty(byte) type(byte) fingerprint(long) template(byte) params(long)
+ *            canonicalAnswer(long)   (the question is rebuilt from its template, no text is logged)
+ *   ANSWER   outcome(byte) points(int) latencyMillis(int) difficultyChange(byte)
+ *            level(byte) score(int) remainingMillis(long)
+ *   END      score(int) questions(int) finalDifficulty(byte)
+ */
+class ExamJournal implements Closeable {
+
+    static final byte START = 1, QUESTION = 2, ANSWER = 3, END = 4;
+    static final byte POLICY_STREAK = 0, POLICY_IRT = 1;
+
+    private static final int FRAME = 8; // length + crc
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long syncMillis;
+    private final Thread flusher;
+    private final Map<Long, Interrupted> interrupted = new LinkedHashMap<>();
+
+    // guarded by this
+    private ByteBuffer batch = ByteBuffer.allocate(256 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(256 * 1024);
+    private long appended;      // bytes appended so far, including the unflushed batch
+    private long nextSession;
+    private int openSessions;
+    private int recordStart;    // batch offset of the record being written
+    private boolean closed;
+
+    // guarded by durableLock
+    private final Object durableLock = new Object();
+    private long durable;
+    private long syncs;
+    private IOException failure;
+
+    /** State of an exam that was started but never ended, rebuilt from its records. */
+    static class Interrupted {
+        final long session;
+        final long startTime;
+        final long paperSeed;
+        final int numQuestions;
+        final long totalMillis;
+        final byte policy;
+        long candidate;                      // 0 = guest
+        int startLevel = 2;                  // level the policy started at (a returning candidate's own)
+        final BitSet correct = new BitSet(); // outcome of answer i, for replaying the adaptive policy
+        long[] fingerprints = new long[8];   // questions already asked, so a resume does not repeat them
+        byte[] topics = new byte[8];         // Topic of each question asked
+        final int[] topicAsked = new int[Topic.values().length];   // answered questions per topic
+        final int[] topicCorrect = new int[Topic.values().length];
+        int asked;
+        int answered;
+        int score;
+        int level = 2;
+        long remainingMillis;
+        long lastTime;
+
+        Interrupted(long session, long startTime, long paperSeed, int numQuestions, long totalMillis, byte policy) {
+            this.session = session;
+            this.startTime = startTime;
+            this.paperSeed = paperSeed;
+            this.numQuestions = numQuestions;
+            this.totalMillis = totalMillis;
+            this.policy = policy;
+            this.remainingMillis = totalMillis;
+            this.lastTime = startTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("exam started %s: %d of %d answered, score %d, %d s left",
+                new Date(startTime), answered, numQuestions, score, remainingMillis / 1000);
+        }
+    }
+
+    private ExamJournal(Path path, FileChannel channel, long syncMillis) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.syncMillis = syncMillis;
+        long end = replay();
+        if (end < channel.size()) channel.truncate(end); // drop a torn tail
+        channel.position(end);
+        this.appended = end;
+        this.durable = end;
+        this.openSessions = interrupted.size();
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    static ExamJournal open(Path path) throws IOException {
+        return open(path, 50);
+    }
+
+    static ExamJournal open(Path path, long syncMillis) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            return new ExamJournal(path, ch, syncMillis);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    Path path() { return path; }
+
+    /** Exams found open when the journal was opened, oldest first. */
+    synchronized List<Interrupted> interrupted() {
+        return new ArrayList<>(interrupted.values());
+    }
+
+    // ---- logging ----
+
+    /** Journal handle for one session; also the session's listener. */
+    class Session implements ExamSession.Listener {
+        final long id;
+
+        Session(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public void questionAsked(ExamSession s, AMCATSimulator.Question q) {
+            synchronized (ExamJournal.this) {
+                ByteBuffer b = begin(QUESTION, id, 31);
+                b.putInt(q.id).put(q.difficulty).put(q.type).putLong(q.fingerprint())
+                    .put((byte)q.template.id).putLong(q.params).putLong(q.canonicalAnswer);
+                commit(b);
+            }
+        }
+
+        @Override
+        public void answered(ExamSession s, AMCATSimulator.Question q, ExamSession.Result r, long latencyNanos) {
+            synchronized (ExamJournal.this) {
+                ByteBuffer b = begin(ANSWER, id, 23);
+                b.put((byte)r.outcome.ordinal()).putInt(r.points).putInt((int)Math.min(Integer.MAX_VALUE, latencyNanos / 1_000_000))
+                    .put((byte)r.difficultyChange).put((byte)s.currentDifficulty()).putInt(s.score())
+                    .putLong(s.remainingMillis());
+                commit(b);
+            }
+        }
+
+        @Override
+        public void finished(ExamSession s) {
+            // END is written by end(), once the caller has stored the score
+        }
+
+        /** Closes the session; returns the journal position to pass to awaitDurable(). */
+        long end(int score, int questions, int finalDifficulty) {
+            synchronized (ExamJournal.this) {
+                ByteBuffer b = begin(END, id, 9);
+                b.putInt(score).putInt(questions).put((byte)finalDifficulty);
+                long pos = commit(b);
+                openSessions--;
+                interrupted.remove(id);
+                return pos;
+            }
+        }
+
+        long end(ExamSession s) {
+            return end(s.score(), s.questionNumber(), s.currentDifficulty());
+        }
+    }
+
+    /** Logs START for a new exam and returns its handle. */
+    synchronized Session begin(long paperSeed, int numQuestions, long totalMillis, byte policy, long candidate,
+                               int startLevel) {
+        long id = nextSession++;
+        ByteBuffer b = begin(START, id, 30);
+        b.putLong(paperSeed).putInt(numQuestions).putLong(totalMillis).put(policy).putLong(candidate)
+            .put((byte)startLevel);
+        commit(b);
+        openSessions++;
+        return new Session(id);
+    }
+
+    /** Handle for continuing an interrupted exam under its original id. */
+    synchronized Session resume(Interrupted exam) {
+        return new Session(exam.session);
+    }
+
+    /** Starts a record in the batch (caller holds the lock); the body is written by the caller. */
+    private ByteBuffer begin(byte kind, long session, int bodySize) {
+        if (closed) throw new IllegalStateException("Journal closed");
+        int size = FRAME + 17 + bodySize;
+        if (batch.remaining() < size) { // flusher is behind: grow rather than block the session
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + size));
+            batch.flip();
+            bigger.put(batch);
+            batch = bigger;
+        }
+        recordStart = batch.position();
+        return batch.putInt(0).putInt(0).put(kind).putLong(session).putLong(System.currentTimeMillis());
+    }
+
+    /** Fills in length and CRC of the record just written and wakes the flusher. */
+    private long commit(ByteBuffer b) {
+        int len = b.position() - recordStart;
+        CRC32C crc = new CRC32C();
+        crc.update(b.array(), recordStart + FRAME, len - FRAME);
+        b.putInt(recordStart, len).putInt(recordStart + 4, (int)crc.getValue());
+        appended += len;
+        notifyAll();
+        return appended;
+    }
+
+    // ---- group commit ----
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                ByteBuffer toWrite;
+                long upTo;
+                synchronized (this) {
+                    while (batch.position() == 0 && !closed) wait();
+                    if (batch.position() == 0) return; // closed and drained
+                }
+                if (!isClosed()) Thread.sleep(syncMillis); // let more sessions join this sync
+                synchronized (this) {
+                    toWrite = batch;
+                    batch = spare;
+                    spare = toWrite;
+                    batch.clear();
+                    upTo = appended;
+                }
+                toWrite.flip();
+                while (toWrite.hasRemaining()) channel.write(toWrite);
+                channel.force(false);
+                toWrite.clear();
+                synchronized (durableLock) {
+                    durable = upTo;
+                    syncs++;
+                    durableLock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException("Journal flusher interrupted"));
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void fail(IOException e) {
+        synchronized (durableLock) {
+            failure = e;
+            durableLock.notifyAll();
+        }
+    }
+
+    /** Blocks until everything up to {@code position} is fsynced. */
+    void awaitDurable(long position) throws IOException {
+        synchronized (durableLock) {
+            while (durable < position) {
+                if (failure != null) throw new IOException("Journal write failed", failure);
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for journal sync");
+                }
+            }
+        }
+    }
+
+    long syncs() {
+        synchronized (durableLock) {
+            return syncs;
+        }
+    }
+
+    synchronized long size() {
+        return appended;
+    }
+
+    /** Empties the file if no exam is open; returns whether it did. */
+    boolean checkpoint() throws IOException {
+        long pos;
+        synchronized (this) {
+            if (openSessions > 0) return false;
+            pos = appended;
+        }
+        awaitDurable(pos);
+        synchronized (this) {
+            if (openSessions > 0 || appended != pos) return false; // something started meanwhile
+            synchronized (durableLock) {
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+                appended = 0;
+                durable = 0;
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (durableLock) {
+            if (failure != null) throw new IOException("Journal write failed", failure);
+        }
+    }
+
+    // ---- recovery ----
+
+    /** Reads every intact record, rebuilding open sessions; returns the end of the valid prefix. */
+    private long replay() throws IOException {
+        long size = channel.size();
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        long filePos = 0;   // file offset of buf[0]
+        long valid = 0;
+        CRC32C crc = new CRC32C();
+        channel.position(0);
+        while (true) {
+            if (buf.position() < FRAME || buf.position() < buf.getInt(0)) {
+                if (buf.position() >= FRAME && buf.getInt(0) > buf.capacity()) {
+                    int len = buf.getInt(0);
+                    if (len > 1 << 20) break; // garbage length
+                    ByteBuffer bigger = ByteBuffer.allocate(len);
+                    buf.flip();
+                    bigger.put(buf);
+                    buf = bigger;
+                }
+                if (channel.read(buf) <= 0) break;
+                continue;
+            }
+            int len = buf.getInt(0);
+            if (len < FRAME + 17) break;
+            crc.reset();
+            crc.update(buf.array(), FRAME, len - FRAME);
+            if ((int)crc.getValue() != buf.getInt(4)) break;
+            apply(ByteBuffer.wrap(buf.array(), FRAME, len - FRAME).slice());
+            valid = filePos + len;
+            // shift the rest of the buffer down
+            int rest = buf.position() - len;
+            System.arraycopy(buf.array(), len, buf.array(), 0, rest);
+            buf.position(rest);
+            filePos += len;
+        }
+        return Math.min(valid, size);
+    }
+
+    private void apply(ByteBuffer r) {
+        byte kind = r.get();
+        long session = r.getLong();
+        long time = r.getLong();
+        nextSession = Math.max(nextSession, session + 1);
+        if (kind == START) {
+            Interrupted exam = new Interrupted(session, time, r.getLong(), r.getInt(), r.getLong(), r.get());
+            if (r.remaining() >= 8) exam.candidate = r.getLong();
+            if (r.remaining() >= 1) exam.startLevel = exam.level = r.get();
+            interrupted.put(session, exam);
+            return;
+        }
+        Interrupted exam = interrupted.get(session);
+        if (exam == null) return;
+        exam.lastTime = time;
+        if (kind == QUESTION) {
+            r.getInt();
+            Topic topic = Topic.of(r.get(), r.get());
+            if (exam.asked == exam.fingerprints.length) {
+                exam.fingerprints = Arrays.copyOf(exam.fingerprints, exam.asked * 2);
+                exam.topics = Arrays.copyOf(exam.topics, exam.asked * 2);
+            }
+            exam.topics[exam.asked] = (byte)topic.ordinal();
+            exam.fingerprints[exam.asked++] = r.getLong();
+        } else if (kind == ANSWER) {
+            boolean correct = r.get() == ExamSession.Outcome.CORRECT.ordinal();
+            r.getInt();
+            r.getInt();
+            r.get();
+            exam.correct.set(exam.answered, correct);
+            if (exam.answered < exam.asked) {
+                int t = exam.topics[exam.answered];
+                exam.topicAsked[t]++;
+                if (correct) exam.topicCorrect[t]++;
+            }
+            exam.answered++;
+            exam.level = r.get();
+            exam.score = r.getInt();
+            exam.remainingMillis = r.getLong();
+        } else if (kind == END) {
+            interrupted.remove(session);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Low-overhead metrics for the exam hot path, shared by every session
+ * - Per (difficulty, type): generation time and response latency in
+ *   log-linear histograms (8 sub-buckets per power of two, so any
+ *   percentile is within 12.5%, 4 KB per stripe, lock-free increments);
+ *   served and answered counts are the histogram totals
+ * - Per (difficulty, type): correct and timed out (LongAdder, so concurrent
+ *   sessions never contend on one counter)
+ * - Recording is one atomic increment per histogram, into a stripe picked
+ *   by thread so busy buckets are not one CAS hotspot across sessions;
+ *   all summing happens on the (rare) read side
+ * - How far a per-question timeout fired after its deadline (timer skew)
+ * - Time remaining when an exam finishes
+ * - Exposed as the JMX bean amcat:type=ExamMetrics and as a text file
+ *   rewritten periodically by startDump()
+ */
+public class ExamMetrics {
+
+    static final ExamMetrics SHARED = new ExamMetrics();
+
+    private static final int BUCKETS = 3 * 10; // difficulty x type
+
+    private final LongAdder[] correct = adders();
+    private final LongAdder[] timedOut = adders();
+    private final Histogram[] generation = histograms();
+    private final Histogram[] response = histograms();
+    private final Histogram overshoot = new Histogram();
+    private final Histogram remainingAtFinish = new Histogram(); // millis
+    private ScheduledExecutorService dumper;
+    private Path dumpFile;
+
+    /**
+     * HDR-style histogram of non-negative longs: values below 8 are exact,
+     * above that each power of two is split into 8 linear sub-buckets.
+     * Striped like LongAdder: it starts with one array of counts and, when
+     * an increment loses a CAS race, grows (up to the next power of two
+     * above the core count) so threads hash to different arrays by thread
+     * id; reads sum the stripes.
+     */
+    static class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int SIZE = (64 - SUB_BITS + 1) * SUB;
+        private static final int MAX_STRIPES =
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+        private volatile AtomicLongArray[] stripes = {new AtomicLongArray(SIZE)};
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            int i = index(value);
+            AtomicLongArray[] cs = stripes;
+            AtomicLongArray counts = cs[stripe(cs.length)];
+            long c = counts.get(i);
+            if (!counts.compareAndSet(i, c, c + 1)) {
+                counts.incrementAndGet(i);
+                if (cs.length < MAX_STRIPES) grow(cs);
+            }
+            if (value > max.get()) max.accumulateAndGet(value, Math::max);
+        }
+
+        private static int stripe(int n) {
+            long id = Thread.currentThread().threadId();
+            return (int)((id * 0x9E3779B97F4A7C15L) >>> 32) & (n - 1);
+        }
+
+        private synchronized void grow(AtomicLongArray[] seen) {
+            if (stripes != seen) return; // another thread grew it already
+            AtomicLongArray[] bigger = Arrays.copyOf(seen, seen.length * 2);
+            for (int s = seen.length; s < bigger.length; s++) bigger[s] = new AtomicLongArray(SIZE);
+            stripes = bigger;
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int)v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return (shift + 1) * SUB + (int)((v >>> shift) & (SUB - 1));
+        }
+
+        /** Highest value that falls in bucket {@code i}. */
+        static long upperBound(int i) {
+            if (i < SUB) return i;
+            int shift = i / SUB - 1;
+            return ((long)(SUB + i % SUB + 1) << shift) - 1;
+        }
+
+        /** Counts per bucket, summed over the stripes. */
+        private long[] snapshot() {
+            long[] sum = new long[SIZE];
+            for (AtomicLongArray counts : stripes) {
+                for (int i = 0; i < SIZE; i++) sum[i] += counts.get(i);
+            }
+            return sum;
+        }
+
+        long count() {
+            long n = 0;
+            for (long c : snapshot()) n += c;
+            return n;
+        }
+
+        long max() { return max.get(); }
+
+        /** Upper bound of the bucket holding the q-quantile (0 when empty). */
+        long percentile(double q) {
+            long[] counts = snapshot();
+            long n = 0;
+            for (long c : counts) n += c;
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long)Math.ceil(q * n));
+            long seen = 0;
+            for (int i = 0; i < SIZE; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        /** Adds every count of {@code other} into this one (for per-tier / overall views). */
+        void addAll(Histogram other) {
+            long[] counts = other.snapshot();
+            AtomicLongArray mine = stripes[0];
+            for (int i = 0; i < SIZE; i++) {
+                if (counts[i] != 0) mine.addAndGet(i, counts[i]);
+            }
+            max.accumulateAndGet(other.max.get(), Math::max);
+        }
+    }
+
+    // ---- recording (hot path) ----
+
+    void recordGeneration(AMCATSimulator.Question q, long nanos) {
+        generation[bucket(q)].record(nanos);
+    }
+
+    void recordResponse(AMCATSimulator.Question q, ExamSession.Outcome outcome, long nanos) {
+        int b = bucket(q);
+        if (outcome == ExamSession.Outcome.TIMED_OUT) {
+            timedOut[b].increment();
+            return;
+        }
+        if (outcome == ExamSession.Outcome.CORRECT) correct[b].increment();
+        response[b].record(nanos);
+    }
+
+    /** A timed read returned nothing; {@code lateNanos} is how long after its deadline it gave up. */
+    void recordTimeoutOvershoot(long lateNanos) {
+        overshoot.record(lateNanos);
+    }
+
+    void recordFinish(long remainingMillis) {
+        remainingAtFinish.record(Math.max(0, remainingMillis));
+    }
+
+    // ---- reading ----
+
+    long served() { return generationAll().count(); }
+    long answered() { return responseAll().count(); }
+    long correct() { return sum(correct); }
+    long timedOut() { return sum(timedOut); }
+    long examsFinished() { return remainingAtFinish.count(); }
+
+    Histogram generation(int difficulty, int type) { return generation[bucket(difficulty, type)]; }
+    Histogram response(int difficulty, int type) { return response[bucket(difficulty, type)]; }
+    Histogram overshoot() { return overshoot; }
+    Histogram remainingAtFinish() { return remainingAtFinish; }
+
+    /** Merged generation histogram over every difficulty and type. */
+    Histogram generationAll() { return merged(generation); }
+    Histogram responseAll() { return merged(response); }
+
+    /** Multi-line text report, also the content of the dump file. */
+    String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %9s %9s %9s %9s %10s %10s %11s %11s%n", "question", "served", "answered",
+            "correct", "timeouts", "gen p50us", "gen p99us", "resp p50ms", "resp p99ms"));
+        for (int d = 1; d <= 3; d++) {
+            for (int t = 0; t < 10; t++) {
+                int b = bucket(d, t);
+                long served = generation[b].count();
+                if (served == 0) continue;
+                sb.append(String.format("%-10s %9d %9d %9d %9d %10.1f %10.1f %11.1f %11.1f%n",
+                    AMCATSimulator.diffName(d) + "/" + t, served, response[b].count(), correct[b].sum(),
+                    timedOut[b].sum(), generation[b].percentile(0.5) / 1e3, generation[b].percentile(0.99) / 1e3,
+                    response[b].percentile(0.5) / 1e6, response[b].percentile(0.99) / 1e6));
+            }
+        }
+        sb.append(String.format("Total: served %d, answered %d, correct %d, timed out %d%n",
+            served(), answered(), correct(), timedOut()));
+        sb.append(String.format("Timeout overshoot: n=%d p50=%.2f ms p99=%.2f ms max=%.2f ms%n", overshoot.count(),
+            overshoot.percentile(0.5) / 1e6, overshoot.percentile(0.99) / 1e6, overshoot.max() / 1e6));
+        sb.append(String.format("Exams finished: %d, time remaining p10=%.1f s p50=%.1f s p90=%.1f s%n",
+            examsFinished(), remainingAtFinish.percentile(0.1) / 1e3, remainingAtFinish.percentile(0.5) / 1e3,
+            remainingAtFinish.percentile(0.9) / 1e3));
+        return sb.toString();
+    }
+
+    // ---- export ----
+
+    /** Attributes shown by jconsole / jmc under amcat:type=ExamMetrics. */
+    public interface View {
+        long getQuestionsServed();
+        long getAnswered();
+        long getCorrect();
+        long getTimedOut();
+        long getExamsFinished();
+        double getGenerationP50Micros();
+        double getGenerationP99Micros();
+        double getResponseP50Seconds();
+        double getResponseP99Seconds();
+        double getTimeoutOvershootP99Millis();
+        double getTimeRemainingP50Seconds();
+        String dump();
+    }
+
+    /** Registers the JMX bean; harmless if it already is. */
+    void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("amcat:type=ExamMetrics");
+            javax.management.MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) server.registerMBean(new StandardMBean(new View() {
+                public long getQuestionsServed() { return served(); }
+                public long getAnswered() { return answered(); }
+                public long getCorrect() { return correct(); }
+                public long getTimedOut() { return timedOut(); }
+                public long getExamsFinished() { return examsFinished(); }
+                public double getGenerationP50Micros() { return generationAll().percentile(0.5) / 1e3; }
+                public double getGenerationP99Micros() { return generationAll().percentile(0.99) / 1e3; }
+                public double getResponseP50Seconds() { return responseAll().percentile(0.5) / 1e9; }
+                public double getResponseP99Seconds() { return responseAll().percentile(0.99) / 1e9; }
+                public double getTimeoutOvershootP99Millis() { return overshoot.percentile(0.99) / 1e6; }
+                public double getTimeRemainingP50Seconds() { return remainingAtFinish.percentile(0.5) / 1e3; }
+                public String dump() { return describe(); }
+            }, View.class), name);
+        } catch (Exception e) {
+            System.err.println("Metrics MBean not registered: " + e.getMessage());
+        }
+    }
+
+    /** Rewrites {@code file} with describe() every {@code periodSeconds} on a daemon thread. */
+    synchronized void startDump(Path file, long periodSeconds) {
+        stopDump();
+        dumpFile = file;
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(this::writeDump, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Stops the periodic dump and writes a final one. */
+    synchronized void stopDump() {
+        if (dumper == null) return;
+        dumper.shutdownNow();
+        dumper = null;
+        writeDump();
+    }
+
+    private void writeDump() {
+        Path file = dumpFile;
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, describe().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Metrics dump failed: " + e.getMessage());
+        }
+    }
+
+    // ---- helpers ----
+
+    private static int bucket(AMCATSimulator.Question q) {
+        return bucket(q.difficulty, q.type);
+    }
+
+    private static int bucket(int difficulty, int type) {
+        return (Math.max(1, Math.min(3, difficulty)) - 1) * 10 + Math.floorMod(type, 10);
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long s = 0;
+        for (LongAdder a : adders) s += a.sum();
+        return s;
+    }
+
+    private static Histogram merged(Histogram[] parts) {
+        Histogram all = new Histogram();
+        for (Histogram h : parts) all.addAll(h);
+        return all;
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] a = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) a[i] = new LongAdder();
+        return a;
+    }
+
+    private static Histogram[] histograms() {
+        Histogram[] h = new Histogram[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) h[i] = new Histogram();
+        return h;
+    }
+}
@@ -0,0 +1,552 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Network front end: one thread, one Selector, any number of candidates
+ * - Line-oriented text protocol over TCP (telnet/nc friendly, see below)
+ * - Each connection drives its own ExamSession; nothing ever blocks, so a
+ *   slow or silent candidate costs a selection key, not a thread
+ * - Per-question deadlines (60 s cap or exam end) are TimingWheel timers;
+ *   an expiry is queued for the selector thread, which grades the question
+ *   as timed out, so select() itself never needs a timeout
+ * - Outgoing text (Question.render() output and status lines) is encoded
+ *   into pooled direct buffers and written as the socket accepts it; a
+ *   client that stops reading is closed once MAX_QUEUED buffers are waiting
+ * - Exam k on connection n gets the paper key "net-n-k", so its questions
+ *   can be regenerated from the master seed and the stored paper seed
+ * - With a score file, finished exams are appended on the selector thread
+ *   and made durable by a syncer thread (one fsync per batch, like the
+ *   journal's group commit). Every exam is also journaled to
+ *   <score-file>.journal; exams a crash or shutdown cut short are recorded
+ *   as interrupted when the server next starts (their candidates are gone, so
+ *   they are finalized, not resumed). A candidate who quits or disconnects
+ *   abandons the exam and no score is stored
+ *
+ * Protocol (one command or answer per line):
+ *   client: START [questions=10] [minutes=10] | QUIT | <answer>
+ *   server: QUESTION <n>/<total> <difficulty>, the rendered question,
+ *           ANSWER <seconds>; then CORRECT | INCORRECT <answer> | TIMEOUT,
+ *           optionally LEVEL <difficulty>, and at the end FINISHED <score> <questions>
+ *
+ * Usage: java ExamServer [port=7070] [seed] [score-file]
+ */
+public class ExamServer implements Closeable {
+
+    static final int MAX_LINE = 1024;
+    static final int MAX_QUEUED = 64; // unsent 4 KB buffers per connection before it is dropped
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final long masterSeed;
+    private final ScoreStore scores; // may be null
+    private final ExamJournal journal; // null without a score file
+    private final BufferPool pool = new BufferPool(4096, 1024);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder text = new StringBuilder(512); // reused for every message
+    private final TimingWheel wheel = TimingWheel.SHARED;
+    private final Queue<Deadline> expired = new ConcurrentLinkedQueue<>(); // filled by the wheel's ticker
+    private final DedupQuestionSource.CohortFilter cohort = new DedupQuestionSource.CohortFilter(1 << 20);
+    private volatile boolean stopped;
+    private long connections;
+    private long examsFinished;
+    private long slowClosed;
+
+    // finished exams waiting for the score sync, then for END in the journal
+    static final long SYNC_MILLIS = 20;
+    private final Object syncLock = new Object();
+    private List<Finished> unsynced = new ArrayList<>(); // guarded by syncLock
+    private boolean syncStopped;                          // guarded by syncLock
+    private Thread syncer;
+
+    /** Connection state; only touched by the selector thread. */
+    private static class Conn {
+        final long id;
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        SelectionKey key;
+        ExamSession session;
+        ExamJournal.Session logged; // the running exam's journal handle
+        AMCATSimulator.Question pending;
+        long paperSeed;
+        TimingWheel.Timeout timer; // pending question's deadline
+        long deadlineSeq; // bumped whenever the pending deadline is cancelled (an expiry may already be queued)
+        boolean closeAfterWrite;
+        long examsStarted; // numbers this connection's paper keys
+
+        Conn(long id, SocketChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+    }
+
+    /** A finished exam whose score is appended but not yet synced. */
+    private static class Finished {
+        final ExamJournal.Session logged; // may be null
+        final ExamSession session;
+
+        Finished(ExamJournal.Session logged, ExamSession session) {
+            this.logged = logged;
+            this.session = session;
+        }
+    }
+
+    private static class Deadline {
+        final Conn conn;
+        final long seq;
+
+        Deadline(Conn conn, long seq) {
+            this.conn = conn;
+            this.seq = seq;
+        }
+    }
+
+    /** Free list of equally sized direct buffers (single-threaded, bounded). */
+    static class BufferPool {
+        private final int bufferSize;
+        private final int maxRetained;
+        private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+        BufferPool(int bufferSize, int maxRetained) {
+            this.bufferSize = bufferSize;
+            this.maxRetained = maxRetained;
+        }
+
+        ByteBuffer take() {
+            ByteBuffer b = free.poll();
+            return b != null ? b : ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        void give(ByteBuffer b) {
+            b.clear();
+            if (free.size() < maxRetained) free.push(b);
+        }
+    }
+
+    ExamServer(int port, long masterSeed, ScoreStore scores, ExamJournal journal) throws IOException {
+        this.masterSeed = masterSeed;
+        this.scores = scores;
+        this.journal = journal;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    int port() {
+        return server.socket().getLocalPort();
+    }
+
+    /** Runs the event loop until stop() is called. */
+    void run() throws IOException {
+        if (scores != null) {
+            syncer = new Thread(this::syncLoop, "score-syncer");
+            syncer.setDaemon(true);
+            syncer.start();
+        }
+        while (!stopped) {
+            selector.select();
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                try {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Conn c = (Conn)key.attachment();
+                        if (key.isReadable()) read(c);
+                        if (key.isValid() && key.isWritable()) write(c);
+                    }
+                } catch (IOException e) {
+                    if (key.attachment() != null) close((Conn)key.attachment());
+                }
+            }
+            expireDeadlines();
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() == null) continue;
+            Conn c = (Conn)key.attachment();
+            c.logged = null; // left open in the journal: recorded as interrupted on the next start
+            close(c);
+        }
+        server.close();
+        selector.close();
+        if (syncer != null) {
+            synchronized (syncLock) {
+                syncStopped = true;
+                syncLock.notifyAll();
+            }
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    long connections() { return connections; }
+    long examsFinished() { return examsFinished; }
+    long slowClosed() { return slowClosed; }
+
+    // ---- I/O ----
+
+    private void accept() throws IOException {
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            Conn c = new Conn(++connections, ch);
+            c.key = ch.register(selector, SelectionKey.OP_READ, c);
+            text.setLength(0);
+            text.append("AMCAT exam server. Commands: START [questions] [minutes] | QUIT\n");
+            send(c);
+        }
+    }
+
+    private void read(Conn c) throws IOException {
+        int n = c.channel.read(c.in);
+        if (n < 0) {
+            close(c);
+            return;
+        }
+        ByteBuffer in = c.in;
+        int start = 0;
+        for (int i = 0; i < in.position() && c.channel.isOpen(); i++) {
+            if (in.get(i) != '\n') continue;
+            int end = i > start && in.get(i - 1) == '\r' ? i - 1 : i;
+            String line = decoder.decode(in.duplicate().position(start).limit(end)).toString();
+            start = i + 1;
+            handleLine(c, line.trim());
+        }
+        if (!c.channel.isOpen()) return;
+        if (start > 0) {
+            in.limit(in.position()).position(start);
+            in.compact();
+        } else if (!in.hasRemaining()) {
+            text.setLength(0);
+            text.append("ERROR line too long\n");
+            c.closeAfterWrite = true;
+            send(c);
+        }
+    }
+
+    private void write(Conn c) throws IOException {
+        while (!c.out.isEmpty()) {
+            ByteBuffer b = c.out.peek();
+            c.channel.write(b);
+            if (b.hasRemaining()) break; // socket buffer full, wait for OP_WRITE
+            pool.give(c.out.poll());
+        }
+        if (c.out.isEmpty()) {
+            if (c.closeAfterWrite) close(c);
+            else c.key.interestOps(SelectionKey.OP_READ);
+        } else {
+            c.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /** Encodes {@code text} into pooled buffers, queues them and writes what the socket takes now. */
+    private void send(Conn c) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        ByteBuffer b = pool.take();
+        while (true) {
+            CoderResult r = encoder.encode(chars, b, true);
+            if (r.isOverflow()) {
+                b.flip();
+                c.out.add(b);
+                b = pool.take();
+                continue;
+            }
+            if (encoder.flush(b).isOverflow()) {
+                b.flip();
+                c.out.add(b);
+                b = pool.take();
+                encoder.flush(b);
+            }
+            break;
+        }
+        b.flip();
+        c.out.add(b);
+        write(c);
+        if (c.out.size() > MAX_QUEUED) { // not reading: drop it rather than buffer without bound
+            slowClosed++;
+            close(c);
+        }
+    }
+
+    private void close(Conn c) {
+        cancelDeadline(c);
+        if (c.logged != null) { // abandoned mid-exam: nothing to recover
+            c.logged.end(c.session);
+            c.logged = null;
+        }
+        c.key.cancel();
+        try {
+            c.channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+        while (!c.out.isEmpty()) pool.give(c.out.poll());
+    }
+
+    // ---- exam flow ----
+
+    private void handleLine(Conn c, String line) throws IOException {
+        text.setLength(0);
+        if (line.equalsIgnoreCase("QUIT")) { // never a valid answer, so also abandons a running exam
+            cancelDeadline(c);
+            text.append("BYE\n");
+            c.closeAfterWrite = true;
+        } else if (c.pending != null) {
+            grade(c, line);
+        } else if (line.regionMatches(true, 0, "START", 0, 5)) {
+            start(c, line);
+        } else if (!line.isEmpty()) {
+            text.append("ERROR expected START [questions] [minutes] or QUIT\n");
+        }
+        if (text.length() > 0) send(c);
+    }
+
+    private void start(Conn c, String line) {
+        String[] parts = line.split("\\s+");
+        int questions = 10, minutes = 10;
+        try {
+            if (parts.length > 1) questions = Integer.parseInt(parts[1]);
+            if (parts.length > 2) minutes = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            text.append("ERROR START takes numbers\n");
+            return;
+        }
+        questions = Math.max(1, Math.min(100, questions));
+        minutes = Math.max(1, Math.min(180, minutes));
+        String sessionKey = "net-" + c.id + "-" + (++c.examsStarted);
+        c.paperSeed = QuestionGenerator.seedFor(masterSeed, sessionKey);
+        QuestionSource source = new DedupQuestionSource(QuestionGenerator.forSession(masterSeed, sessionKey), cohort);
+        c.session = new ExamSession(source, questions, minutes * 60_000L);
+        if (journal != null) {
+            c.logged = journal.begin(c.paperSeed, questions, minutes * 60_000L, ExamJournal.POLICY_STREAK, 0,
+                c.session.currentDifficulty());
+            c.session.addListener(c.logged);
+        }
+        ask(c);
+    }
+
+    private void grade(Conn c, String answer) throws IOException {
+        cancelDeadline(c);
+        report(c, c.session.answer(answer), c.pending);
+        ask(c);
+    }
+
+    private void report(Conn c, ExamSession.Result r, AMCATSimulator.Question q) {
+        switch (r.outcome) {
+            case CORRECT: text.append("CORRECT\n"); break;
+            case TIMED_OUT: text.append("TIMEOUT\n"); break;
+            default: text.append("INCORRECT ").append(q.answer()).append('\n');
+        }
+        if (r.difficultyChange != 0) {
+            text.append("LEVEL ").append(AMCATSimulator.diffName(c.session.currentDifficulty())).append('\n');
+        }
+    }
+
+    /** Appends the next question (or the final score) to {@code text} and arms its deadline. */
+    private void ask(Conn c) {
+        ExamSession s = c.session;
+        AMCATSimulator.Question q = s.next();
+        c.pending = q;
+        if (q == null) {
+            text.append("FINISHED ").append(s.score()).append(' ').append(s.questionNumber()).append('\n');
+            recordScore(c);
+            c.session = null;
+            return;
+        }
+        text.append("QUESTION ").append(s.questionNumber()).append('/').append(s.numQuestions()).append(' ')
+            .append(AMCATSimulator.diffName(q.difficulty)).append('\n');
+        try {
+            q.render(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        text.append("ANSWER ").append(s.perQuestionTimeoutSeconds()).append('\n');
+        Deadline d = new Deadline(c, c.deadlineSeq);
+        c.timer = wheel.schedule(s.questionTimeoutNanos(), () -> {
+            expired.add(d);
+            selector.wakeup();
+        });
+    }
+
+    private void cancelDeadline(Conn c) {
+        c.deadlineSeq++;
+        if (c.timer != null) {
+            c.timer.cancel();
+            c.timer = null;
+        }
+    }
+
+    private void expireDeadlines() {
+        Deadline d;
+        while ((d = expired.poll()) != null) {
+            Conn c = d.conn;
+            if (d.seq != c.deadlineSeq || c.pending == null || !c.channel.isOpen()) continue; // answered or gone
+            ExamMetrics.SHARED.recordTimeoutOvershoot(System.nanoTime() - c.timer.deadlineNanos);
+            cancelDeadline(c);
+            text.setLength(0);
+            report(c, c.session.answer(null), c.pending);
+            ask(c);
+            try {
+                send(c);
+            } catch (IOException e) {
+                close(c);
+            }
+        }
+    }
+
+    /** Appends the score (a page-cache write); the syncer makes it durable and then closes the journaled exam. */
+    private void recordScore(Conn c) {
+        examsFinished++;
+        ExamJournal.Session logged = c.logged;
+        c.logged = null;
+        if (scores == null) return;
+        ExamSession s = c.session;
+        try {
+            scores.append(new ScoreStore.Record(System.currentTimeMillis(), 0, s.score(), s.questionNumber(),
+                ScoreStore.MODE_TIMED_EXAM, s.currentDifficulty(), c.paperSeed));
+        } catch (IOException e) {
+            System.err.println("Error recording score: " + e.getMessage());
+            return; // left open in the journal, so the next start records it
+        }
+        synchronized (syncLock) {
+            unsynced.add(new Finished(logged, s));
+            syncLock.notifyAll();
+        }
+    }
+
+    // ---- durability (syncer thread) ----
+
+    /** Group commit for scores: one fsync covers every exam finished since the last, then their ENDs are journaled. */
+    private void syncLoop() {
+        while (true) {
+            List<Finished> batch;
+            synchronized (syncLock) {
+                try {
+                    while (unsynced.isEmpty() && !syncStopped) syncLock.wait();
+                    if (unsynced.isEmpty()) return; // stopped and drained
+                    if (!syncStopped) syncLock.wait(SYNC_MILLIS); // let more exams join this sync
+                } catch (InterruptedException e) {
+                    return;
+                }
+                batch = unsynced;
+                unsynced = new ArrayList<>();
+            }
+            try {
+                scores.force();
+                for (Finished f : batch) {
+                    if (f.logged != null) f.logged.end(f.session);
+                }
+                if (journal != null) journal.checkpoint();
+            } catch (IOException e) {
+                System.err.println("Error syncing scores: " + e.getMessage()); // exams stay open in the journal
+            }
+        }
+    }
+
+    /** Records the exams a crash cut short, unless their score reached the store first. */
+    static int recoverExams(ExamJournal journal, ScoreStore scores) throws IOException {
+        List<ExamJournal.Interrupted> open = journal.interrupted();
+        List<ScoreStore.Record> recent = scores.newest(0, Math.max(64, open.size() * 2));
+        List<ScoreStore.Record> stored = new ArrayList<>();
+        int recovered = 0;
+        for (ExamJournal.Interrupted exam : open) {
+            ScoreStore.Record found = null;
+            for (ScoreStore.Record r : recent) {
+                if (r.paperSeed == exam.paperSeed && r.timestamp >= exam.startTime) found = r;
+            }
+            if (found == null) {
+                found = new ScoreStore.Record(System.currentTimeMillis(), exam.candidate, exam.score, exam.answered,
+                    ScoreStore.MODE_RECOVERED, exam.level, exam.paperSeed);
+                scores.append(found);
+                recovered++;
+            }
+            stored.add(found);
+        }
+        scores.force(); // before END, so a crash in between cannot lose them
+        long pos = 0;
+        for (int i = 0; i < open.size(); i++) {
+            ScoreStore.Record r = stored.get(i);
+            pos = journal.resume(open.get(i)).end(r.score, r.questions, r.finalDifficulty);
+        }
+        journal.awaitDurable(pos);
+        journal.checkpoint();
+        return recovered;
+    }
+
+    private static void usage() {
+        System.out.println("Usage: java ExamServer [port=7070] [seed] [score-file]");
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port;
+        long seed;
+        try {
+            port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+            seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        } catch (NumberFormatException e) {
+            usage();
+            return;
+        }
+        if (args.length > 3 || port < 0 || port > 65535) {
+            usage();
+            return;
+        }
+        ScoreStore scores = args.length > 2 ? ScoreStore.open(Paths.get(args[2])) : null;
+        ExamJournal journal = scores == null ? null : ExamJournal.open(Paths.get(args[2] + ".journal"));
+        if (journal != null && !journal.interrupted().isEmpty()) {
+            int n = journal.interrupted().size();
+            System.out.println("Recorded " + recoverExams(journal, scores) + " of " + n + " exams interrupted by a crash");
+        }
+        ExamMetrics.SHARED.registerMBean();
+        ExamServer server = new ExamServer(port, seed, scores, journal);
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                main.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        System.out.println("Exam server listening on port " + server.port() + ", seed " + seed);
+        try {
+            server.run();
+        } finally {
+            server.close();
+            if (journal != null) {
+                journal.checkpoint();
+                journal.close();
+            }
+            if (scores != null) scores.close();
+            System.out.println("Served " + server.connections() + " connections, " + server.examsFinished() + " exams"
+                + (server.slowClosed() > 0 ? ", closed " + server.slowClosed() + " clients that stopped reading" : ""));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless state for ONE candidate's timed adaptive exam
+ * - next() hands out the following question (null once the exam is over)
+ * - answer() grades the response (null = timed out) and adapts difficulty
+ * - No console I/O, so any number of sessions can run side by side
+ * - Generation time, response latency and time left at the end are recorded
+ *   in ExamMetrics (SHARED unless another instance, or null, is given)
+ * - Listeners see every question and graded answer (journal, exports)
+ */
+class ExamSession {
+
+    enum Outcome { CORRECT, INCORRECT, TIMED_OUT }
+
+    static final int MAX_QUESTION_SECONDS = 60;
+
+    /** Observer of one session's progress; called on the session's own thread. */
+    interface Listener {
+        void questionAsked(ExamSession session, AMCATSimulator.Question q);
+
+        void answered(ExamSession session, AMCATSimulator.Question q, Result result, long latencyNanos);
+
+        /** The exam is over (out of questions or time); called once. */
+        void finished(ExamSession session);
+    }
+
+    static class Result {
+        final Outcome outcome;
+        final int points;
+        final int difficultyChange; // -1, 0 or +1
+
+        Result(Outcome outcome, int points, int difficultyChange) {
+            this.outcome = outcome;
+            this.points = points;
+            this.difficultyChange = difficultyChange;
+        }
+    }
+
+    private final AdaptivePolicy policy;
+    private final int numQuestions;
+    private final long endNanos; // System.nanoTime() deadline: immune to wall-clock steps (NTP, manual changes)
+    private final ExamMetrics metrics; // may be null
+    private Listener[] listeners = new Listener[0];
+
+    private long askedAt; // nanoTime when the pending question was handed out
+    private boolean finished;
+
+    private int asked = 0;
+    private int score = 0;
+    private AMCATSimulator.Question current;
+
+    /** Session using the classic streak rule over the given source. */
+    ExamSession(QuestionSource source, int numQuestions, long totalMillis) {
+        this(new AdaptivePolicy.Streak(source), numQuestions, totalMillis);
+    }
+
+    ExamSession(AdaptivePolicy policy, int numQuestions, long totalMillis) {
+        this(policy, numQuestions, totalMillis, ExamMetrics.SHARED);
+    }
+
+    ExamSession(AdaptivePolicy policy, int numQuestions, long totalMillis, ExamMetrics metrics) {
+        this.policy = policy;
+        this.numQuestions = numQuestions;
+        this.endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(totalMillis);
+        this.metrics = metrics;
+    }
+
+    void addListener(Listener l) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = l;
+    }
+
+    /** Continues an interrupted exam: {@code asked} questions are already done and scored. */
+    void restore(int asked, int score) {
+        if (this.asked != 0) throw new IllegalStateException("Session already started");
+        this.asked = asked;
+        this.score = score;
+    }
+
+    /** Next question chosen by the adaptive policy, or null when out of questions or time. */
+    AMCATSimulator.Question next() {
+        if (current != null) throw new IllegalStateException("Previous question not answered yet");
+        if (asked >= numQuestions || isOutOfTime()) {
+            if (!finished) {
+                finished = true;
+                if (metrics != null) metrics.recordFinish(remainingMillis());
+                for (Listener l : listeners) l.finished(this);
+            }
+            return null;
+        }
+        if (metrics == null) {
+            current = policy.next();
+            if (listeners.length > 0) askedAt = System.nanoTime();
+        } else {
+            long t0 = System.nanoTime();
+            current = policy.next();
+            askedAt = System.nanoTime();
+            metrics.recordGeneration(current, askedAt - t0);
+        }
+        asked++;
+        for (Listener l : listeners) l.questionAsked(this, current);
+        return current;
+    }
+
+    /** Grades the pending question; a null answer means the candidate ran out of time. */
+    Result answer(String userAns) {
+        AMCATSimulator.Question question = current;
+        if (question == null) throw new IllegalStateException("No question pending");
+        current = null;
+
+        Outcome outcome;
+        int points = 0;
+        if (userAns == null) {
+            outcome = Outcome.TIMED_OUT;
+        } else if (question.check(userAns)) {
+            outcome = Outcome.CORRECT;
+            points = AMCATSimulator.pointsForDifficulty(question.difficulty);
+            score += points;
+        } else {
+            outcome = Outcome.INCORRECT;
+        }
+
+        long latency = metrics != null || listeners.length > 0 ? System.nanoTime() - askedAt : 0;
+        if (metrics != null) metrics.recordResponse(question, outcome, latency);
+
+        int before = policy.level();
+        policy.record(question, outcome == Outcome.CORRECT);
+        Result result = new Result(outcome, points, Integer.signum(policy.level() - before));
+        for (Listener l : listeners) l.answered(this, question, result, latency);
+        return result;
+    }
+
+    /** Seconds the candidate gets for the pending question (capped at 60). */
+    int perQuestionTimeoutSeconds() {
+        return (int)Math.min(MAX_QUESTION_SECONDS, (remainingMillis() + 999) / 1000);
+    }
+
+    /**
+     * Time allowed for the pending question: the 60 s cap or the end of the
+     * exam, whichever is sooner, so one timer covers both deadlines.
+     */
+    long questionTimeoutNanos() {
+        return Math.max(0, Math.min(TimeUnit.SECONDS.toNanos(MAX_QUESTION_SECONDS), endNanos - System.nanoTime()));
+    }
+
+    long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime());
+    }
+
+    boolean isOutOfTime() {
+        return endNanos - System.nanoTime() <= 0;
+    }
+
+    int questionNumber() { return asked; }
+    int numQuestions() { return numQuestions; }
+    int currentDifficulty() { return policy.level(); }
+    AdaptivePolicy policy() { return policy; }
+    int score() { return score; }
+}
@@ -0,0 +1,529 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Blueprint-driven fixed-form assembly: thousands of parallel forms for a
+ * whole cohort, each meeting the same blueprint, items spread evenly
+ * - A Blueprint asks for a number of questions per topic and a difficulty
+ *   mix; plan() turns it into one topic x difficulty count matrix shared by
+ *   every form, so forms are parallel. It trades the mix against item
+ *   exposure: within the blueprint's tolerance of the closest feasible mix
+ *   it picks the plan whose items are reused by the fewest forms
+ * - Items come from buckets precomputed once per (topic, difficulty) and
+ *   shuffled by the seed: the bank's entries, or without a bank up to 4096
+ *   distinct items per generator case; duplicates by content are dropped
+ * - Form f takes slice f of each planned bucket, wrapping round, so forms
+ *   share no item until a bucket is used up and afterwards every item of it
+ *   is reused equally often (several generator cases only have a few dozen
+ *   distinct items). A slice needs no coordination and depends only on f
+ *   and the seed
+ * - Forms are built in slices on the ForkJoin common pool; each form gets a
+ *   satisfaction record (topic shortfall, difficulty-mix error) and
+ *   report() summarizes them with item exposure, warning when the pool
+ *   cannot keep the forms disjoint
+ *
+ * Blueprint spec: TOPIC=count,...[;mix=easy/medium/hard percent][;tolerance=percent of
+ * questions that may change difficulty to keep forms disjoint, default 20], topics by
+ * Topic name, e.g. PERCENTAGES=4,TIME_SPEED_WORK=4,SERIES=4,CLOCKS_CALENDAR=3,REASONING=5;mix=30/50/20
+ *
+ * Output (--out) is one question per line: form, then BulkGenerator's columns
+ *
+ * Usage: java FormAssembler <forms> [--bank FILE] [--blueprint SPEC] [--seed N] [--out FILE]
+ */
+public class FormAssembler {
+
+    static final String DEFAULT_BLUEPRINT =
+        "PERCENTAGES=4,TIME_SPEED_WORK=4,SERIES=4,CLOCKS_CALENDAR=3,REASONING=5;mix=30/50/20";
+
+    private static final int TOPICS = Topic.values().length;
+    private static final int SLICE = 256;       // forms per fork-join task
+    private static final int PER_CASE = 4096;   // distinct items generated per generator case (without a bank)
+
+    /** Questions per topic plus the wanted difficulty mix. */
+    static class Blueprint {
+        final int[] perTopic = new int[TOPICS];
+        final int[] mixPercent = {30, 50, 20}; // easy, medium, hard
+        int tolerance = 20; // percent of the questions that may move off the mix to cut item exposure
+
+        static Blueprint parse(String spec) {
+            Blueprint b = new Blueprint();
+            String[] parts = spec.split(";");
+            boolean[] listed = new boolean[TOPICS];
+            for (String item : parts[0].split(",")) {
+                String[] kv = item.trim().split("=");
+                if (kv.length != 2) throw new IllegalArgumentException("Expected TOPIC=count, got '" + item + "'");
+                Topic topic;
+                try {
+                    topic = Topic.valueOf(kv[0].trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown topic '" + kv[0].trim() + "', expected one of "
+                        + Arrays.toString(Topic.values()));
+                }
+                if (listed[topic.ordinal()]) throw new IllegalArgumentException("Topic " + topic + " listed twice");
+                listed[topic.ordinal()] = true;
+                int count = Integer.parseInt(kv[1].trim());
+                if (count < 0) throw new IllegalArgumentException("Negative count for " + topic + ": " + count);
+                b.perTopic[topic.ordinal()] = count;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i].trim();
+                if (part.startsWith("tolerance=")) {
+                    b.tolerance = Integer.parseInt(part.substring(10).trim());
+                    if (b.tolerance < 0 || b.tolerance > 100) throw new IllegalArgumentException("tolerance out of range: " + b.tolerance);
+                    continue;
+                }
+                if (!part.startsWith("mix=")) throw new IllegalArgumentException("Unknown blueprint part '" + part + "'");
+                String[] p = part.substring(4).split("/");
+                if (p.length != 3) throw new IllegalArgumentException("mix takes easy/medium/hard percentages");
+                int sum = 0;
+                for (int d = 0; d < 3; d++) {
+                    int percent = b.mixPercent[d] = Integer.parseInt(p[d].trim());
+                    if (percent < 0 || percent > 100) throw new IllegalArgumentException("mix percentage out of range: " + percent);
+                    sum += percent;
+                }
+                if (sum != 100) throw new IllegalArgumentException("mix percentages add up to " + sum + ", not 100");
+            }
+            if (b.size() == 0) throw new IllegalArgumentException("Blueprint asks for no questions");
+            return b;
+        }
+
+        int size() {
+            int n = 0;
+            for (int c : perTopic) n += c;
+            return n;
+        }
+
+        /** Questions per difficulty, rounded so they add up to size() (largest remainder). */
+        int[] difficultyTargets() {
+            int n = size();
+            int[] target = new int[3];
+            int[] remainder = new int[3];
+            int given = 0;
+            for (int d = 0; d < 3; d++) {
+                given += target[d] = n * mixPercent[d] / 100;
+                remainder[d] = n * mixPercent[d] % 100;
+            }
+            for (; given < n; given++) {
+                int best = 0;
+                for (int d = 1; d < 3; d++) if (remainder[d] > remainder[best]) best = d;
+                target[best]++;
+                remainder[best] = -1;
+            }
+            return target;
+        }
+    }
+
+    /** One assembled form and how well it meets the blueprint. */
+    static class Form {
+        final int number;
+        final AMCATSimulator.Question[] items;
+        int size;
+        int shortfall;  // questions the blueprint asked for that no bucket could supply
+
+        Form(int number, int capacity) {
+            this.number = number;
+            this.items = new AMCATSimulator.Question[capacity];
+        }
+
+        void add(AMCATSimulator.Question q) {
+            items[size++] = q;
+        }
+    }
+
+    private final Blueprint blueprint;
+    private final AMCATSimulator.Question[][] cells; // distinct items per topic * 3 + difficulty - 1, shuffled
+    private final int[][] plan = new int[TOPICS][3];
+
+    /** Plans for {@code forms} forms: exposure is judged by how often that many forms reuse each item. */
+    FormAssembler(Blueprint blueprint, AMCATSimulator.Question[][] cells, int forms) {
+        this.blueprint = blueprint;
+        this.cells = cells;
+        plan(forms);
+    }
+
+    // ---- buckets ----
+
+    /** Buckets of a bank: one entry per distinct content, shuffled by the seed. */
+    static AMCATSimulator.Question[][] bucketBank(QuestionBank bank, long seed) {
+        List<List<AMCATSimulator.Question>> cells = emptyCells();
+        Set<Long> seen = new HashSet<>(bank.size() * 2);
+        for (int ord = 0; ord < bank.size(); ord++) {
+            AMCATSimulator.Question q = bank.get(ord);
+            if (seen.add(q.fingerprint())) cells.get(cell(q)).add(q);
+        }
+        return shuffled(cells, seed);
+    }
+
+    /**
+     * Buckets filled from the generators: up to {@code perCase} distinct items
+     * per generator case, one fork-join task per case; a case whose parameter
+     * space is used up (1000 draws in a row with nothing new) stops early.
+     */
+    static AMCATSimulator.Question[][] bucketGenerators(long seed, int perCase) {
+        List<ForkJoinTask<List<AMCATSimulator.Question>>> tasks = new ArrayList<>();
+        for (int d = 1; d <= 3; d++) {
+            for (int type = 0; type < 10; type++) {
+                int difficulty = d, t = type;
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    QuestionGenerator gen = new QuestionGenerator(
+                        new SplittableRandom(QuestionGenerator.seedFor(seed, "forms-" + difficulty + "-" + t)),
+                        QuestionGenerator.IdSequence.SHARED);
+                    Set<Long> seen = new HashSet<>();
+                    List<AMCATSimulator.Question> items = new ArrayList<>();
+                    for (int stale = 0; items.size() < perCase && stale < 1000; ) {
+                        AMCATSimulator.Question q = difficulty == 1 ? gen.generateEasyQuestion(t)
+                            : difficulty == 2 ? gen.generateMediumQuestion(t) : gen.generateHardQuestion(t);
+                        if (seen.add(q.fingerprint())) {
+                            items.add(q);
+                            stale = 0;
+                        } else {
+                            stale++;
+                        }
+                    }
+                    return items;
+                }));
+            }
+        }
+        ForkJoinTask.invokeAll(tasks);
+        List<List<AMCATSimulator.Question>> cells = emptyCells();
+        for (ForkJoinTask<List<AMCATSimulator.Question>> task : tasks) {
+            List<AMCATSimulator.Question> items = task.join();
+            if (!items.isEmpty()) cells.get(cell(items.get(0))).addAll(items);
+        }
+        return shuffled(cells, seed);
+    }
+
+    private static int cell(AMCATSimulator.Question q) {
+        return Topic.of(q.difficulty, q.type).ordinal() * 3 + q.difficulty - 1;
+    }
+
+    private static List<List<AMCATSimulator.Question>> emptyCells() {
+        List<List<AMCATSimulator.Question>> cells = new ArrayList<>(TOPICS * 3);
+        for (int c = 0; c < TOPICS * 3; c++) cells.add(new ArrayList<>());
+        return cells;
+    }
+
+    private static AMCATSimulator.Question[][] shuffled(List<List<AMCATSimulator.Question>> lists, long seed) {
+        SplittableRandom rnd = new SplittableRandom(QuestionGenerator.seedFor(seed, "forms-shuffle"));
+        AMCATSimulator.Question[][] cells = new AMCATSimulator.Question[lists.size()][];
+        for (int c = 0; c < cells.length; c++) {
+            AMCATSimulator.Question[] cell = cells[c] = lists.get(c).toArray(new AMCATSimulator.Question[0]);
+            for (int i = cell.length - 1; i > 0; i--) {
+                int j = rnd.nextInt(i + 1);
+                AMCATSimulator.Question tmp = cell[i];
+                cell[i] = cell[j];
+                cell[j] = tmp;
+            }
+        }
+        return cells;
+    }
+
+    // ---- planning ----
+
+    /**
+     * Fills the shared plan exactly: a dynamic program over the topics, with
+     * the easy and medium questions placed so far as state, tries every split
+     * of each topic that its buckets can hold without repeating an item, and
+     * keeps per state the least loaded busiest bucket (planned / bucket size).
+     * Of the end states whose mix error is within the tolerance of the best
+     * reachable, it takes the one with the lowest exposure (forms sharing
+     * each item of the busiest bucket), then the smallest mix error. A topic
+     * with fewer distinct items than asked gets all it has.
+     */
+    private void plan(int forms) {
+        int n = blueprint.size();
+        int[] target = blueprint.difficultyTargets();
+        double[][] cost = new double[n + 1][n + 1]; // [easy][medium] -> busiest bucket so far, NaN = unreachable
+        for (double[] row : cost) Arrays.fill(row, Double.NaN);
+        cost[0][0] = 0;
+        int[][][] choice = new int[TOPICS][][]; // [topic][easy][medium] -> easy * (n + 1) + medium of that topic
+        int placed = 0;
+        for (int t = 0; t < TOPICS; t++) {
+            int want = Math.min(blueprint.perTopic[t], size(t, 1) + size(t, 2) + size(t, 3));
+            double[][] next = new double[n + 1][n + 1];
+            for (double[] row : next) Arrays.fill(row, Double.NaN);
+            choice[t] = new int[n + 1][n + 1];
+            for (int e0 = 0; e0 <= placed; e0++) {
+                for (int m0 = 0; e0 + m0 <= placed; m0++) {
+                    if (Double.isNaN(cost[e0][m0])) continue;
+                    for (int e = 0; e <= Math.min(want, size(t, 1)); e++) {
+                        for (int m = 0; e + m <= want && m <= size(t, 2); m++) {
+                            int h = want - e - m;
+                            if (h > size(t, 3)) continue;
+                            double c = Math.max(cost[e0][m0], Math.max(load(e, size(t, 1)),
+                                Math.max(load(m, size(t, 2)), load(h, size(t, 3)))));
+                            double old = next[e0 + e][m0 + m];
+                            if (Double.isNaN(old) || c < old) {
+                                next[e0 + e][m0 + m] = c;
+                                choice[t][e0 + e][m0 + m] = e * (n + 1) + m;
+                            }
+                        }
+                    }
+                }
+            }
+            placed += want;
+            cost = next;
+        }
+        int minErr = Integer.MAX_VALUE;
+        for (int e = 0; e <= placed; e++) {
+            for (int m = 0; e + m <= placed; m++) {
+                if (!Double.isNaN(cost[e][m])) minErr = Math.min(minErr, mixError(e, m, placed, target));
+            }
+        }
+        int allowed = minErr + 2 * (n * blueprint.tolerance / 100); // a question moved costs 2 in mixError
+        int bestE = -1, bestM = -1, bestErr = 0;
+        long bestExposure = Long.MAX_VALUE;
+        for (int e = 0; e <= placed; e++) {
+            for (int m = 0; e + m <= placed; m++) {
+                if (Double.isNaN(cost[e][m])) continue;
+                int err = mixError(e, m, placed, target);
+                if (err > allowed) continue;
+                long exposure = (long)Math.ceil(cost[e][m] * Math.max(1, forms) - 1e-9);
+                if (exposure < bestExposure || exposure == bestExposure
+                    && (err < bestErr || err == bestErr && cost[e][m] < cost[bestE][bestM])) {
+                    bestExposure = exposure;
+                    bestErr = err;
+                    bestE = e;
+                    bestM = m;
+                }
+            }
+        }
+        for (int t = TOPICS - 1; t >= 0; t--) {
+            int split = choice[t][bestE][bestM];
+            int e = split / (n + 1), m = split % (n + 1);
+            int want = Math.min(blueprint.perTopic[t], size(t, 1) + size(t, 2) + size(t, 3));
+            plan[t][0] = e;
+            plan[t][1] = m;
+            plan[t][2] = want - e - m;
+            bestE -= e;
+            bestM -= m;
+        }
+    }
+
+    private static int mixError(int easy, int medium, int placed, int[] target) {
+        return Math.abs(easy - target[0]) + Math.abs(medium - target[1]) + Math.abs(placed - easy - medium - target[2]);
+    }
+
+    private static double load(int planned, int size) {
+        return planned == 0 ? 0 : (double)planned / size;
+    }
+
+    private int size(int topic, int difficulty) {
+        return cells[topic * 3 + difficulty - 1].length;
+    }
+
+    long poolSize() {
+        long n = 0;
+        for (AMCATSimulator.Question[] cell : cells) n += cell.length;
+        return n;
+    }
+
+    /** Forms that can be built before any item has to appear twice. */
+    long disjointForms() {
+        long forms = Long.MAX_VALUE;
+        for (int t = 0; t < TOPICS; t++) {
+            for (int d = 1; d <= 3; d++) {
+                if (plan[t][d - 1] > 0) forms = Math.min(forms, size(t, d) / plan[t][d - 1]);
+            }
+        }
+        return forms;
+    }
+
+    // ---- assembly ----
+
+    /** Builds {@code count} forms in parallel slices; forms[i] is form number i. */
+    Form[] assemble(int count) {
+        Form[] forms = new Form[count];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < count; from += SLICE) {
+            int lo = from, hi = Math.min(count, from + SLICE);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                for (int f = lo; f < hi; f++) forms[f] = assemble1(f);
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        return forms;
+    }
+
+    /**
+     * Form f takes the k items after the (f * k)-th of each planned bucket,
+     * wrapping round: forms are disjoint until a bucket is used up, then
+     * every item of it is reused equally often. Depends only on f.
+     */
+    private Form assemble1(int f) {
+        Form form = new Form(f, blueprint.size());
+        for (int t = 0; t < TOPICS; t++) {
+            for (int d = 1; d <= 3; d++) {
+                int k = plan[t][d - 1];
+                AMCATSimulator.Question[] cell = cells[t * 3 + d - 1];
+                long start = (long)f * k;
+                for (int i = 0; i < k; i++) form.add(cell[(int)((start + i) % cell.length)]);
+            }
+            form.shortfall += blueprint.perTopic[t] - planned(t);
+        }
+        return form;
+    }
+
+    private int planned(int t) {
+        return plan[t][0] + plan[t][1] + plan[t][2];
+    }
+
+    // ---- reporting ----
+
+    /** Per-form blueprint satisfaction, summarized over all forms. */
+    String report(Form[] forms) {
+        int n = blueprint.size();
+        int[] target = blueprint.difficultyTargets();
+        StringBuilder sb = new StringBuilder();
+        Formatter out = new Formatter(sb);
+
+        out.format("Plan per form (of bucket size) %-11s %-11s %-11s asked%n", "Easy", "Medium", "Hard");
+        int[] planTotal = new int[3];
+        for (int t = 0; t < TOPICS; t++) {
+            if (blueprint.perTopic[t] == 0) continue;
+            out.format("  %-28s", Topic.values()[t].label);
+            for (int d = 0; d < 3; d++) {
+                out.format(" %-11s", plan[t][d] + " of " + size(t, d + 1));
+                planTotal[d] += plan[t][d];
+            }
+            out.format(" %5d%n", blueprint.perTopic[t]);
+        }
+        out.format("  %-28s %-11d %-11d %-11d %5d   (mix target %d/%d/%d)%n", "total", planTotal[0], planTotal[1],
+            planTotal[2], n, target[0], target[1], target[2]);
+
+        long exact = 0, short_ = 0, missing = 0, mixError = 0, items = 0;
+        long[] missingByTopic = new long[TOPICS];
+        int[] count = new int[TOPICS];
+        int[] diff = new int[3];
+        for (Form f : forms) {
+            Arrays.fill(count, 0);
+            Arrays.fill(diff, 0);
+            for (int i = 0; i < f.size; i++) {
+                AMCATSimulator.Question q = f.items[i];
+                count[Topic.of(q.difficulty, q.type).ordinal()]++;
+                diff[q.difficulty - 1]++;
+            }
+            items += f.size;
+            int err = 0;
+            for (int d = 0; d < 3; d++) err += Math.abs(diff[d] - target[d]);
+            mixError += err / 2; // questions that would have to change difficulty
+            boolean topicsMet = true;
+            for (int t = 0; t < TOPICS; t++) {
+                int gap = blueprint.perTopic[t] - count[t];
+                if (gap > 0) {
+                    missingByTopic[t] += gap;
+                    topicsMet = false;
+                }
+            }
+            if (!topicsMet) {
+                short_++;
+                missing += f.shortfall;
+            }
+            if (topicsMet && err == 0) exact++;
+        }
+        int total = forms.length;
+        out.format("Satisfaction over %,d forms%n", total);
+        out.format("  blueprint met exactly : %,d (%.1f%%)%n", exact, 100.0 * exact / Math.max(1, total));
+        out.format("  short on topics       : %,d forms, %,d questions missing", short_, missing);
+        for (int t = 0; t < TOPICS; t++) {
+            if (missingByTopic[t] > 0) out.format(" [%s %,d]", Topic.values()[t].label, missingByTopic[t]);
+        }
+        out.format("%n  difficulty mix off by : %.2f questions per form on average%n", (double)mixError / Math.max(1, total));
+
+        // exposure from sorted fingerprints: no hashing of a million boxed keys
+        long[] fps = new long[(int)items];
+        int i = 0, repeatedInForm = 0;
+        for (Form f : forms) {
+            int first = i;
+            for (int k = 0; k < f.size; k++) fps[i++] = f.items[k].fingerprint();
+            Arrays.sort(fps, first, i);
+            for (int k = first + 1; k < i; k++) if (fps[k] == fps[k - 1]) repeatedInForm++;
+        }
+        Arrays.parallelSort(fps);
+        long distinct = 0;
+        int run = 0, maxExposure = 0;
+        for (int k = 0; k < fps.length; k++) {
+            run = k > 0 && fps[k] == fps[k - 1] ? run + 1 : 1;
+            if (run == 1) distinct++;
+            maxExposure = Math.max(maxExposure, run);
+        }
+        out.format("  items placed          : %,d, distinct %,d, repeated within a form %d%n", items, distinct, repeatedInForm);
+        out.format("  item exposure         : %.2f forms per item on average, %d at most; the pool supports %,d fully disjoint forms%n",
+            distinct == 0 ? 0 : (double)items / distinct, maxExposure, disjointForms());
+        if (maxExposure > 1) {
+            out.format("WARNING: forms are not disjoint: items are reused by up to %,d of the %,d forms, as the pool only"
+                + " supports %,d disjoint forms of this blueprint; add items (--bank) or ask for fewer forms%n",
+                maxExposure, total, disjointForms());
+        }
+        return sb.toString();
+    }
+
+    static void write(Form[] forms, Path out) throws IOException {
+        try (Writer w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write("# form\t" + BulkGenerator.HEADER.substring(2));
+            StringBuilder sb = new StringBuilder(4096);
+            for (Form f : forms) {
+                for (int i = 0; i < f.size; i++) {
+                    sb.setLength(0);
+                    sb.append(f.number).append('\t');
+                    BulkGenerator.appendRecord(sb, f.items[i]);
+                    w.append(sb);
+                }
+            }
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: java FormAssembler <forms> [--bank FILE] [--blueprint SPEC] [--seed N] [--out FILE]");
+        System.out.println("  SPEC defaults to " + DEFAULT_BLUEPRINT);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            usage();
+            return;
+        }
+        int count = Integer.parseInt(args[0]);
+        String bankFile = null, spec = DEFAULT_BLUEPRINT, outFile = null;
+        long seed = System.nanoTime();
+        for (int i = 1; i < args.length; i++) {
+            if (i + 1 == args.length || !args[i].startsWith("--")) {
+                usage();
+                return;
+            }
+            switch (args[i]) {
+                case "--bank": bankFile = args[++i]; break;
+                case "--blueprint": spec = args[++i]; break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--out": outFile = args[++i]; break;
+                default:
+                    usage();
+                    return;
+            }
+        }
+        Blueprint blueprint = Blueprint.parse(spec);
+        QuestionBank bank = bankFile == null ? null : QuestionBank.open(Paths.get(bankFile));
+        try {
+            long t0 = System.nanoTime();
+            FormAssembler assembler = new FormAssembler(blueprint,
+                bank != null ? bucketBank(bank, seed) : bucketGenerators(seed, PER_CASE), count);
+            long t1 = System.nanoTime();
+            Form[] forms = assembler.assemble(count);
+            long t2 = System.nanoTime();
+            System.out.printf("Assembled %,d forms of %d in %.2f s (%,.0f forms/s), seed %d%n",
+                count, blueprint.size(), (t2 - t1) / 1e9, count / ((t2 - t1) / 1e9), seed);
+            System.out.printf("Buckets: %,d distinct items from %s, built in %.2f s%n", assembler.poolSize(),
+                bank == null ? "the generators" : "bank " + bankFile, (t1 - t0) / 1e9);
+            System.out.print(assembler.report(forms));
+            if (outFile != null) {
+                write(forms, Paths.get(outFile));
+                System.out.println("Forms written to " + outFile);
+            }
+        } finally {
+            if (bank != null) bank.close();
+        }
+    }
+}
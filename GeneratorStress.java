@@ -0,0 +1,223 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress run over every generator (3 tiers x 10 types), round robin
+ * - One worker thread per core, each with its own seeded generator
+ * - Every draw is timed; the slowest draw per (tier, type) is reported, so a
+ *   generator that searches or retries shows up as a long tail
+ * - Every answer is recomputed forward from the prompt's numbers and must
+ *   match the key: a non-negative whole number, fraction, pair or half
+ *   degree, or the option whose text is the right answer
+ * - A watchdog aborts with the stuck (tier, type) if no progress is made
+ *
+ * Usage: java GeneratorStress [draws=100000000] [seed]
+ */
+public class GeneratorStress {
+
+    private static final int BUCKETS = 30;
+    private static final long STALL_MILLIS = 5000;
+
+    public static void main(String[] args) throws Exception {
+        long draws = args.length > 0 ? Long.parseLong(args[0]) : 100_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        AtomicLong done = new AtomicLong();
+        Worker[] workers = new Worker[threads];
+        long start = System.nanoTime();
+        for (int w = 0; w < threads; w++) {
+            long share = draws / threads + (w < draws % threads ? 1 : 0);
+            workers[w] = new Worker(new QuestionGenerator(
+                new SplittableRandom(QuestionGenerator.seedFor(seed, "stress-" + w)),
+                new QuestionGenerator.IdSequence(0)), share, done);
+            workers[w].setDaemon(true);
+            workers[w].start();
+        }
+
+        long lastDone = -1;
+        long lastChange = System.currentTimeMillis();
+        for (Worker w : workers) {
+            while (w.isAlive()) {
+                w.join(1000);
+                long now = System.currentTimeMillis();
+                long d = done.get();
+                if (d != lastDone) {
+                    lastDone = d;
+                    lastChange = now;
+                } else if (now - lastChange > STALL_MILLIS) {
+                    System.out.println("STALLED after " + d + " draws:");
+                    for (Worker s : workers) {
+                        if (s.isAlive()) System.out.println("  " + s.getName() + " in " + bucketName(s.current));
+                    }
+                    System.exit(1);
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long failures = 0;
+        System.out.printf("%-10s\t%12s\t%10s\t%12s\t%8s%n", "generator", "draws", "mean ns", "max ns", "bad");
+        for (int b = 0; b < BUCKETS; b++) {
+            long n = 0, total = 0, max = 0, bad = 0;
+            for (Worker w : workers) {
+                n += w.count[b];
+                total += w.totalNanos[b];
+                max = Math.max(max, w.maxNanos[b]);
+                bad += w.bad[b];
+            }
+            failures += bad;
+            System.out.printf("%-10s\t%12d\t%10.0f\t%12d\t%8d%n", bucketName(b), n, n == 0 ? 0 : total / (double)n, max, bad);
+        }
+        for (Worker w : workers) {
+            if (w.firstBad != null) System.out.println("e.g. " + w.firstBad);
+        }
+        System.out.printf("%d draws in %.1f s (%.0f/s), seed %d: %s%n", draws, seconds, draws / seconds, seed,
+            failures == 0 ? "OK" : failures + " bad answers");
+        if (failures > 0) System.exit(1);
+    }
+
+    private static String bucketName(int b) {
+        return AMCATSimulator.diffName(b / 10 + 1) + "/" + b % 10;
+    }
+
+    private static class Worker extends Thread {
+        final long[] count = new long[BUCKETS];
+        final long[] totalNanos = new long[BUCKETS];
+        final long[] maxNanos = new long[BUCKETS]; // includes any GC/JIT pause that hit the draw
+        final long[] bad = new long[BUCKETS];
+        volatile int current;
+        String firstBad;
+
+        private final QuestionGenerator gen;
+        private final long draws;
+        private final AtomicLong done;
+
+        Worker(QuestionGenerator gen, long draws, AtomicLong done) {
+            super("stress");
+            this.gen = gen;
+            this.draws = draws;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            for (long i = 0; i < draws; i++) {
+                int b = (int)(i % BUCKETS);
+                int type = b % 10;
+                current = b;
+                long t0 = System.nanoTime();
+                AMCATSimulator.Question q = b < 10 ? gen.generateEasyQuestion(type)
+                    : b < 20 ? gen.generateMediumQuestion(type) : gen.generateHardQuestion(type);
+                long elapsed = System.nanoTime() - t0;
+                count[b]++;
+                totalNanos[b] += elapsed;
+                if (elapsed > maxNanos[b]) maxNanos[b] = elapsed;
+                if (!valid(q)) {
+                    if (bad[b]++ == 0 && firstBad == null) firstBad = q.prompt() + " -> " + q.answer();
+                }
+                if ((i & 1023) == 1023) done.addAndGet(1024);
+            }
+        }
+    }
+
+    private static final String[] WEEKDAYS = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
+
+    /**
+     * Recomputes the answer forward from the prompt's numbers, the way the
+     * generators used to, and compares it with the key: free answers by
+     * canonical form, option questions by the text of the keyed option
+     */
+    static boolean valid(AMCATSimulator.Question q) {
+        String expected = expected(q);
+        if (expected == null) return false;
+        if (q.options() == null) {
+            if (q.template.id == 26) { // clock: "97.5" is shown from its own parameter, keyed as text
+                return expected.equals(q.answer()) && AnswerForm.parse(expected) == q.canonicalAnswer;
+            }
+            return AnswerForm.kind(q.canonicalAnswer) != AnswerForm.TEXT && AnswerForm.parse(expected) == q.canonicalAnswer;
+        }
+        if (AnswerForm.kind(q.canonicalAnswer) != AnswerForm.OPTION) return false;
+        int keyed = AnswerForm.format(q.canonicalAnswer).charAt(0) - 'a';
+        return keyed < q.options().length && expected.equals(q.options()[keyed]);
+    }
+
+    /** The answer (or correct option text) implied by the parameters; null if it is not a non-negative whole value. */
+    static String expected(AMCATSimulator.Question q) {
+        long p = q.params;
+        int a = QuestionTemplate.param(p, 0), b = QuestionTemplate.param(p, 1);
+        int c = QuestionTemplate.param(p, 2), d = QuestionTemplate.param(p, 3);
+        switch (q.template.id) {
+            // easy
+            case 0: return quotient(c - b, a);                                   // ax + b = c
+            case 1: return b - a == c - b && d - c == b - a ? String.valueOf(d + (b - a)) : null;
+            case 2: return quotient((long)a * b, 100);                           // a% of b
+            case 3: return quotient(a + b + c, 3);
+            case 4: return String.valueOf(a + b);
+            case 5: return String.valueOf(a * b);
+            case 6: return "Carrot";
+            case 7: return quotient((long)a * b, b + c);                         // first part of a in b:c
+            case 8: return a < 3 ? new String[]{"Sad", "Cold", "Small"}[a] : null;
+            case 9: return String.valueOf(a + b);
+            // medium
+            case 10: return quotient(a, b);                                      // length / time
+            case 11: {
+                String first = quotient((long)c * a, a + b);
+                return first == null ? null : first + "," + (c - Long.parseLong(first));
+            }
+            case 12: return quotient((long)a * (100 + b), 100);                   // cp (1 + p/100)
+            case 13: return quotient((long)a * b, a + b);                         // 1 / (1/a + 1/b)
+            case 14: return quotient((long)a * ((100 + b) * (100 + b) - 10000), 10000); // P((1 + r)^2 - 1)
+            case 15: return b * b == a * c ? quotient((long)c * c, b) : null;     // next term of a GP
+            case 16: {
+                if (a < 1 || a > b) return null;
+                long perm = 1;                                                    // n! / (n - r)!
+                for (int i = b - a + 1; i <= b; i++) perm *= i;
+                return String.valueOf(perm);
+            }
+            case 17: return b + "/" + a;                                         // reduced by AnswerForm
+            case 18: return a < 3 ? new String[]{"grandmother", "uncle", "aunt"}[a] : null;
+            case 19: return quotient((long)a * b + (long)c * d, a + c);           // weighted mean price
+            // hard
+            case 20: {
+                long n = Math.round((Math.sqrt(8.0 * a + 1) - 1) / 2);            // n(n + 1)/2 = sum
+                return n * (n + 1) / 2 == a ? String.valueOf(n) : null;
+            }
+            case 21: {
+                String rest = quotient((long)(a - c) * b, a);                     // B finishes (1 - c/a) of the work
+                return rest == null ? null : String.valueOf(c + Long.parseLong(rest));
+            }
+            case 22: return WEEKDAYS[(a + b) % 7];
+            case 23: {
+                long v = 1;
+                for (int exp = 0; exp < 31 && v <= b; exp++, v *= a) {
+                    if (v == b) return String.valueOf(exp);
+                }
+                return null;
+            }
+            case 24: return quotient((long)a * (2L * b + (long)(a - 1) * c), 2);
+            case 25: {
+                long den = (long)b * c + (long)a * c - (long)a * b;               // 1/a + 1/b - 1/c, over abc
+                return den > 0 ? quotient((long)a * b * c, den) : null;
+            }
+            case 26: {
+                int halfDegrees = Math.abs(60 * (a % 12) + b - 12 * b);           // 2 |30h + m/2 - 6m|
+                if (halfDegrees > 360) halfDegrees = 720 - halfDegrees;
+                return (halfDegrees / 2) + (halfDegrees % 2 == 0 ? "" : ".5");
+            }
+            case 27: return "All X are Z";
+            case 28: return b % 2 == 0 && a - 5 == b / 2 ? "Each alone" : null;  // both statements give x
+            case 29: {
+                long root = Math.round(Math.cbrt(a));
+                return root * root * root == a ? String.valueOf(root) : null;
+            }
+            default: return null;
+        }
+    }
+
+    /** n / d as text when it is a non-negative whole number, else null. */
+    private static String quotient(long n, long d) {
+        if (d <= 0 || n < 0 || n % d != 0) return null;
+        return String.valueOf(n / d);
+    }
+}
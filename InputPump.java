@@ -0,0 +1,96 @@
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * One long-lived reader thread that feeds console lines into a bounded queue
+ * - readLine() blocks; readLine(timeout) blocks too, but a TimingWheel
+ *   timer ends the wait by queueing a marker owned by that one read, so
+ *   deadlines share the wheel's ticker instead of each being a timed wait
+ * - No thread is created or torn down per question, and a timed-out read
+ *   leaves no parked reader behind to swallow the next answer; a marker
+ *   whose read already got its line is skipped by later reads
+ */
+class InputPump {
+
+    private static final String EOF = new String("<eof>"); // identity-compared sentinel
+
+    private final BlockingQueue<String> lines = new ArrayBlockingQueue<>(64);
+    private final TimingWheel wheel;
+
+    InputPump(InputStream in) {
+        this(in, TimingWheel.SHARED);
+    }
+
+    InputPump(InputStream in, TimingWheel wheel) {
+        this.wheel = wheel;
+        Thread reader = new Thread(() -> pump(in), "input-pump");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void pump(InputStream in) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in))) {
+            String line;
+            while ((line = br.readLine()) != null) lines.put(line);
+        } catch (IOException e) {
+            // treat a broken stream like end of input
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                lines.put(EOF);
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+
+    /** Next line, waiting as long as needed; null at end of input. */
+    String readLine() {
+        try {
+            String line;
+            while (isTimeoutMarker(line = lines.take())) {
+                // left over from a read that got its line first
+            }
+            return unwrap(line);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** Next line if one arrives before the deadline, otherwise null. */
+    String readLine(long timeout, TimeUnit unit) {
+        String marker = new String("\n"); // no console line contains a newline; identity tells reads apart
+        TimingWheel.Timeout timer = wheel.schedule(unit.toNanos(timeout), () -> lines.offer(marker));
+        try {
+            String line;
+            while (isTimeoutMarker(line = lines.take())) {
+                if (line == marker) return null;
+            }
+            return unwrap(line);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (!timer.cancel()) lines.remove(marker); // fired meanwhile: don't leave it queued
+        }
+    }
+
+    /** Drops lines typed ahead, e.g. a late answer to a question that already timed out. */
+    void discardPending() {
+        String line;
+        while ((line = lines.peek()) != null && line != EOF) lines.poll();
+    }
+
+    private static boolean isTimeoutMarker(String line) {
+        return line.length() == 1 && line.charAt(0) == '\n';
+    }
+
+    private String unwrap(String line) {
+        if (line == EOF) {
+            lines.offer(EOF); // keep end-of-input visible to every later read
+            return null;
+        }
+        return line;
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.SplittableRandom;
+
+/**
+ * IRT adaptive policy for one session
+ * - Ability theta is the EAP estimate over a fixed grid with a N(0,1) prior;
+ *   each response adds log P or log(1-P) at every grid point (2PL, Rasch when a = 1)
+ * - The next item is one of the most informative unused items at theta,
+ *   found through the shared ItemPool's b-sorted index
+ * - level() maps theta back onto the three tiers for display and scoring
+ */
+class IrtPolicy implements AdaptivePolicy {
+
+    private static final int GRID = 81;
+    private static final double[] THETA = new double[GRID];       // -4.0 .. 4.0
+
+    static {
+        for (int k = 0; k < GRID; k++) THETA[k] = -4.0 + 8.0 * k / (GRID - 1);
+    }
+
+    private final ItemPool pool;
+    private final SplittableRandom rand;
+    private final double[] logPosterior = new double[GRID];
+    private int[] used = new int[16]; // pool positions already asked
+    private int usedCount = 0;
+    private int pending = -1;
+    private double theta;
+    private double standardError = 1.0;
+
+    IrtPolicy(ItemPool pool, SplittableRandom rand) {
+        this(pool, rand, 0.0);
+    }
+
+    /** Starts the estimate at {@code startTheta} by centring the N(0,1)-shaped prior there. */
+    IrtPolicy(ItemPool pool, SplittableRandom rand, double startTheta) {
+        this.pool = pool;
+        this.rand = rand;
+        this.theta = startTheta;
+        for (int k = 0; k < GRID; k++) {
+            double d = THETA[k] - startTheta;
+            logPosterior[k] = -0.5 * d * d;
+        }
+    }
+
+    @Override
+    public AMCATSimulator.Question next() {
+        return pool.question(nextPosition());
+    }
+
+    /** Chooses and reserves the next item's pool position. */
+    int nextPosition() {
+        int pos = pool.select(theta, this::isUsed, rand);
+        if (pos < 0) throw new IllegalStateException("Item pool exhausted");
+        if (usedCount == used.length) used = java.util.Arrays.copyOf(used, usedCount * 2);
+        used[usedCount++] = pos;
+        pending = pos;
+        return pos;
+    }
+
+    @Override
+    public void record(AMCATSimulator.Question q, boolean correct) {
+        if (pending < 0) throw new IllegalStateException("No item pending");
+        double a = pool.a(pending);
+        double b = pool.b(pending);
+        pending = -1;
+
+        double max = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < GRID; k++) {
+            double p = ItemPool.probability(a, b, THETA[k]);
+            logPosterior[k] += Math.log(correct ? p : 1 - p);
+            max = Math.max(max, logPosterior[k]);
+        }
+        double sum = 0, mean = 0, sq = 0;
+        for (int k = 0; k < GRID; k++) {
+            logPosterior[k] -= max; // keep the log weights bounded
+            double w = Math.exp(logPosterior[k]);
+            sum += w;
+            mean += w * THETA[k];
+            sq += w * THETA[k] * THETA[k];
+        }
+        theta = mean / sum;
+        standardError = Math.sqrt(Math.max(0, sq / sum - theta * theta));
+    }
+
+    @Override
+    public int level() {
+        return Math.max(1, Math.min(3, (int)Math.round(theta / 1.5) + 2));
+    }
+
+    double theta() { return theta; }
+    double standardError() { return standardError; }
+
+    private boolean isUsed(int pos) {
+        for (int i = 0; i < usedCount; i++) if (used[i] == pos) return true;
+        return false;
+    }
+}
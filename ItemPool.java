@@ -0,0 +1,191 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Calibrated IRT item pool over a QuestionBank, indexed by difficulty parameter
+ * - Every bank entry has a discrimination a and a difficulty b (2PL; a = 1
+ *   everywhere is the Rasch model)
+ * - Items are kept sorted by b, so the most informative items for an ability
+ *   theta sit next to the binary-search position of theta; select() only
+ *   looks at a small window there, whatever the pool size
+ * - Immutable once built, so one pool is shared by every session
+ *
+ * Calibration file (<bank>.irt): magic, count, then per bank entry (float a, float b).
+ * Without one, priors are derived from each entry's tier and type.
+ *
+ * Usage: java ItemPool priors <bank-file>   (writes <bank-file>.irt)
+ */
+public class ItemPool {
+
+    static final int MAGIC = 0x49525431; // "IRT1"
+
+    private static final int WINDOW = 16;    // candidates examined on each side of theta
+    private static final int RANDOMESQUE = 3; // pick among the best few to limit item exposure
+
+    private final QuestionBank bank; // null for synthetic pools
+    private final int[] item;        // bank ordinal, by position in b order
+    private final float[] a;
+    private final float[] b;
+
+    /** Builds the index; {@code a[i]}, {@code b[i]} belong to bank ordinal {@code i}. */
+    ItemPool(QuestionBank bank, float[] a, float[] b) {
+        int n = b.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) keys[i] = ((long)sortable(b[i]) << 32) | i;
+        Arrays.sort(keys);
+        this.bank = bank;
+        this.item = new int[n];
+        this.a = new float[n];
+        this.b = new float[n];
+        for (int p = 0; p < n; p++) {
+            int ord = (int)keys[p];
+            item[p] = ord;
+            this.a[p] = a[ord];
+            this.b[p] = b[ord];
+        }
+    }
+
+    static ItemPool fromBank(QuestionBank bank) throws IOException {
+        Path calibration = calibrationFile(bank);
+        float[][] ab = Files.exists(calibration) ? readCalibration(calibration, bank.size()) : priors(bank);
+        return new ItemPool(bank, ab[0], ab[1]);
+    }
+
+    int size() { return b.length; }
+    double a(int pos) { return a[pos]; }
+    double b(int pos) { return b[pos]; }
+    int ordinal(int pos) { return item[pos]; }
+
+    AMCATSimulator.Question question(int pos) {
+        return bank.get(item[pos]);
+    }
+
+    /** Fisher information of the item at {@code pos} for ability theta (2PL). */
+    double information(int pos, double theta) {
+        double p = probability(a[pos], b[pos], theta);
+        return a[pos] * a[pos] * p * (1 - p);
+    }
+
+    static double probability(double a, double b, double theta) {
+        return 1.0 / (1.0 + Math.exp(-a * (theta - b)));
+    }
+
+    /**
+     * Position of one of the most informative unused items for theta, or -1 if
+     * every item is used. Cost is O(log n + WINDOW) for any pool size.
+     */
+    int select(double theta, IntPredicate used, SplittableRandom rand) {
+        int n = b.length;
+        int hi = lowerBound(theta);
+        int lo = hi - 1;
+        int[] best = new int[RANDOMESQUE];
+        double[] bestInfo = new double[RANDOMESQUE];
+        int found = 0;
+        for (int seen = 0; seen < 2 * WINDOW && (lo >= 0 || hi < n); ) {
+            // walk outward, nearest b first
+            int pos;
+            if (hi >= n || (lo >= 0 && theta - b[lo] <= b[hi] - theta)) pos = lo--;
+            else pos = hi++;
+            if (used.test(pos)) continue;
+            seen++;
+            double info = information(pos, theta);
+            int slot;
+            if (found < RANDOMESQUE) slot = found++;
+            else if (info > bestInfo[RANDOMESQUE - 1]) slot = RANDOMESQUE - 1;
+            else continue;
+            best[slot] = pos;
+            bestInfo[slot] = info;
+            for (int i = slot; i > 0 && bestInfo[i] > bestInfo[i - 1]; i--) { // keep best first
+                double ti = bestInfo[i];
+                bestInfo[i] = bestInfo[i - 1];
+                bestInfo[i - 1] = ti;
+                int tp = best[i];
+                best[i] = best[i - 1];
+                best[i - 1] = tp;
+            }
+        }
+        return found == 0 ? -1 : best[rand.nextInt(found)];
+    }
+
+    /** First position whose b is >= theta. */
+    int lowerBound(double theta) {
+        int lo = 0, hi = b.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (b[mid] < theta) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // ---- calibration ----
+
+    static Path calibrationFile(QuestionBank bank) {
+        return Paths.get(bank.path() + ".irt");
+    }
+
+    /** Prior (a, b) per bank entry: tier sets the centre, type and a per-item jitter spread it out. */
+    static float[][] priors(QuestionBank bank) {
+        int n = bank.size();
+        float[] a = new float[n];
+        float[] b = new float[n];
+        for (int ord = 0; ord < n; ord++) {
+            long h = QuestionGenerator.mix64(bank.id(ord));
+            double jitter = ((h >>> 11) * 0x1.0p-53 - 0.5) * 1.2; // uniform in [-0.6, 0.6)
+            b[ord] = (float)((bank.difficulty(ord) - 2) * 1.5 + (bank.type(ord) - 4.5) / 4.5 * 0.4 + jitter);
+            a[ord] = 1.0f;
+        }
+        return new float[][]{a, b};
+    }
+
+    static float[][] readCalibration(Path file, int expected) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt(0) != MAGIC) throw new IOException("Not an IRT calibration file: " + file);
+            int n = buf.getInt(4);
+            if (n != expected) throw new IOException("Calibration has " + n + " items, bank has " + expected);
+            float[] a = new float[n];
+            float[] b = new float[n];
+            for (int i = 0; i < n; i++) {
+                a[i] = buf.getFloat(8 + i * 8);
+                b[i] = buf.getFloat(12 + i * 8);
+            }
+            return new float[][]{a, b};
+        }
+    }
+
+    static void writeCalibration(Path file, float[] a, float[] b) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8 + b.length * 8);
+        buf.putInt(MAGIC).putInt(b.length);
+        for (int i = 0; i < b.length; i++) buf.putFloat(a[i]).putFloat(b[i]);
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+    }
+
+    private static int sortable(float f) { // int order == float order
+        int bits = Float.floatToIntBits(f);
+        return bits < 0 ? ~bits | Integer.MIN_VALUE : bits;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !args[0].equals("priors")) {
+            System.out.println("Usage: java ItemPool priors <bank-file>");
+            return;
+        }
+        try (QuestionBank bank = QuestionBank.open(Paths.get(args[1]))) {
+            float[][] ab = priors(bank);
+            Path out = calibrationFile(bank);
+            writeCalibration(out, ab[0], ab[1]);
+            ItemPool pool = new ItemPool(bank, ab[0], ab[1]);
+            System.out.printf("Wrote %d item calibrations to %s (b from %.2f to %.2f)%n",
+                pool.size(), out, pool.b(0), pool.b(pool.size() - 1));
+        }
+    }
+}
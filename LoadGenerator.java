@@ -0,0 +1,306 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless load run: many simulated candidates, one virtual thread each
+ * - Every candidate drives its own ExamSession with its own seeded generator
+ * - Draws are de-duplicated per candidate and across the whole run (cohort)
+ * - Candidates are bots drawn from ability profiles: each answers correctly
+ *   with the 2PL probability ItemPool uses (ability theta against the
+ *   tier's difficulty on the same scale as the bank priors), shifted per
+ *   topic (question type) by the profile's topic skill
+ * - Think time per question is log-normal around a median (sigma 0 = fixed)
+ * - Sessions start all at once, or as a Poisson stream at a target rate
+ * - Reports sustained throughput, next-question latency percentiles, peak
+ *   concurrency, how the difficulty level converges for each profile, then
+ *   the per-question ExamMetrics table
+ *
+ * - With --responses, every answer is also appended to a ResponseLog
+ * - With a journal file, every session is journaled and waits for its END
+ *   record to be fsynced; the report shows how few syncs were needed
+ *
+ * Usage: java LoadGenerator [sessions=5000] [questions=20] [thinkMillis=50] [seed] [journal-file]
+ *          [--rate sessionsPerSecond] [--think-sigma S=0.5] [--profile name,theta[,weight][,t<type>=<skill>]...]
+ *          [--responses file]
+ *   e.g. --profile weak,-1.5 --profile strong,1.5,2,t3=-1   (strong except at type 3, twice as common)
+ */
+public class LoadGenerator {
+
+    /** A class of bot candidates and the convergence statistics of its sessions. */
+    static class Profile {
+        final String name;
+        final double theta;
+        final double weight;
+        final double[] topicSkill = new double[10]; // added to theta per question type
+
+        final LongAdder sessions = new LongAdder();
+        final LongAdder answered = new LongAdder();
+        final LongAdder correct = new LongAdder();
+        final LongAdder settledAt = new LongAdder(); // question number of the last level change
+        final LongAdder[] finalLevel = {new LongAdder(), new LongAdder(), new LongAdder()};
+        LongAdder[] levelSum; // level in force at question i, summed over sessions
+
+        Profile(String name, double theta, double weight) {
+            this.name = name;
+            this.theta = theta;
+            this.weight = weight;
+        }
+
+        /** Parses {@code name,theta[,weight][,t<type>=<skill>]...}. */
+        static Profile parse(String spec) {
+            String[] parts = spec.split(",");
+            if (parts.length < 2) throw new IllegalArgumentException("Profile needs name,theta: " + spec);
+            int i = 2;
+            double weight = 1;
+            if (parts.length > 2 && !parts[2].startsWith("t")) weight = Double.parseDouble(parts[i++]);
+            Profile p = new Profile(parts[0], Double.parseDouble(parts[1]), weight);
+            for (; i < parts.length; i++) {
+                int eq = parts[i].indexOf('=');
+                if (!parts[i].startsWith("t") || eq < 0) throw new IllegalArgumentException("Bad topic skill: " + parts[i]);
+                int type = Integer.parseInt(parts[i].substring(1, eq));
+                if (type < 0 || type >= p.topicSkill.length) throw new IllegalArgumentException("Bad topic skill: " + parts[i]);
+                p.topicSkill[type] = Double.parseDouble(parts[i].substring(eq + 1));
+            }
+            return p;
+        }
+
+        /** Chance this bot answers {@code q} correctly. */
+        double pCorrect(AMCATSimulator.Question q) {
+            double b = (q.difficulty - 2) * 1.5; // tier centres of ItemPool.priors()
+            return ItemPool.probability(1.0, b, theta + topicSkill[Math.floorMod(q.type, 10)]);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: java LoadGenerator [sessions=5000] [questions=20] [thinkMillis=50] [seed] [journal-file]"
+            + " [--rate N] [--think-sigma S] [--profile name,theta[,weight][,t<type>=<skill>]] [--responses FILE]");
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        List<String> positional = new ArrayList<>();
+        List<Profile> profiles = new ArrayList<>();
+        double rate = 0, thinkSigma = 0.5;
+        String responsesFile = null;
+        int sessions, questions, thinkMillis;
+        long masterSeed;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (!args[i].startsWith("--")) {
+                    positional.add(args[i]);
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    usage();
+                    return;
+                }
+                switch (args[i]) {
+                    case "--rate": rate = Double.parseDouble(args[++i]); break;
+                    case "--think-sigma": thinkSigma = Double.parseDouble(args[++i]); break;
+                    case "--profile": profiles.add(Profile.parse(args[++i])); break;
+                    case "--responses": responsesFile = args[++i]; break;
+                    default:
+                        usage();
+                        return;
+                }
+            }
+            sessions = positional.size() > 0 ? Integer.parseInt(positional.get(0)) : 5000;
+            questions = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 20;
+            thinkMillis = positional.size() > 2 ? Integer.parseInt(positional.get(2)) : 50;
+            masterSeed = positional.size() > 3 ? Long.parseLong(positional.get(3)) : System.nanoTime();
+        } catch (IllegalArgumentException e) { // includes NumberFormatException
+            System.out.println("Error: " + e.getMessage());
+            usage();
+            return;
+        }
+        if (positional.size() > 5 || sessions < 1 || questions < 1 || thinkMillis < 0 || rate < 0 || thinkSigma < 0) {
+            usage();
+            return;
+        }
+        ExamJournal journal = positional.size() > 4 ? ExamJournal.open(Paths.get(positional.get(4))) : null;
+        if (journal != null && !journal.interrupted().isEmpty()) {
+            System.out.println("Journal holds " + journal.interrupted().size() + " interrupted sessions (left as they are)");
+        }
+        ResponseLog.Writer responses = responsesFile == null ? null : ResponseLog.Writer.open(Paths.get(responsesFile));
+        if (profiles.isEmpty()) {
+            profiles.add(new Profile("weak", -1.5, 1));
+            profiles.add(new Profile("average", 0, 1));
+            profiles.add(new Profile("strong", 1.5, 1));
+        }
+        double totalWeight = 0;
+        for (Profile p : profiles) {
+            p.levelSum = new LongAdder[questions];
+            for (int i = 0; i < questions; i++) p.levelSum[i] = new LongAdder();
+            totalWeight += p.weight;
+        }
+
+        ExamMetrics.Histogram latency = new ExamMetrics.Histogram();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peakActive = new AtomicInteger();
+        LongAdder answeredTotal = new LongAdder();
+        DedupQuestionSource.CohortFilter cohort = new DedupQuestionSource.CohortFilter(sessions * questions);
+        AtomicLong redraws = new AtomicLong();
+        Random rnd = new Random(masterSeed);
+        long startLag = 0;
+
+        ExamMetrics.SHARED.registerMBean();
+        List<Long> perSecond = new ArrayList<>();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        long[] lastCount = {0};
+        sampler.scheduleAtFixedRate(() -> {
+            long now = answeredTotal.sum();
+            synchronized (perSecond) { perSecond.add(now - lastCount[0]); }
+            lastCount[0] = now;
+        }, 1, 1, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        try (ExecutorService ex = Executors.newVirtualThreadPerTaskExecutor()) {
+            long due = start;
+            for (int c = 0; c < sessions; c++) {
+                if (rate > 0) { // Poisson arrivals: exponential gaps around 1/rate
+                    due += (long)(-Math.log(1 - rnd.nextDouble()) / rate * 1e9);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) LockSupport.parkNanos(wait);
+                    else startLag = Math.max(startLag, -wait);
+                }
+                Profile profile = pick(profiles, rnd.nextDouble() * totalWeight);
+                DedupQuestionSource source = new DedupQuestionSource(
+                    QuestionGenerator.forSession(masterSeed, "load-" + c), cohort);
+                double sigma = thinkSigma;
+                ExamSession.Listener exported = responses == null ? null
+                    : responses.session(QuestionGenerator.seedFor(masterSeed, "load-" + c));
+                ex.submit(() -> {
+                    peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    try {
+                        runCandidate(source, profile, questions, thinkMillis, sigma, latency, answeredTotal, journal, exported);
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                    redraws.addAndGet(source.redraws());
+                    return null;
+                });
+            }
+        } // close() waits for every candidate to finish
+        long elapsed = System.nanoTime() - start;
+        sampler.shutdownNow();
+        long syncs = journal == null ? 0 : journal.syncs();
+        long journalBytes = journal == null ? 0 : journal.size();
+        if (journal != null) journal.close();
+        if (responses != null) responses.close();
+
+        long n = answeredTotal.sum();
+        double seconds = elapsed / 1e9;
+        System.out.printf("Sessions: %d (peak %d concurrent), questions answered: %d, wall time: %.2f s%n",
+            sessions, peakActive.get(), n, seconds);
+        if (rate > 0) System.out.printf("Arrivals: %.1f sessions/s target, worst start lag %.1f ms%n", rate, startLag / 1e6);
+        System.out.printf("Throughput: %.0f questions/s overall, %s%n", n / seconds, sustained(perSecond));
+        System.out.printf("Next-question latency: p50=%.1f us  p99=%.1f us  p99.9=%.1f us  max=%.1f us%n",
+            latency.percentile(0.50) / 1e3, latency.percentile(0.99) / 1e3, latency.percentile(0.999) / 1e3,
+            latency.max() / 1e3);
+        System.out.printf("Duplicate redraws: %d (%.2f per question), cohort filter %d bytes%n",
+            redraws.get(), n == 0 ? 0 : redraws.get() / (double)n, cohort.memoryBytes());
+        if (responses != null) {
+            System.out.printf("Responses: %d rows appended to %s%n", responses.rowsWritten(), responsesFile);
+        }
+        if (journal != null) {
+            System.out.printf("Journal: %d bytes, %d fsyncs (%.1f/s, %.0f sessions per sync)%n", journalBytes, syncs,
+                syncs / seconds, syncs == 0 ? 0 : sessions / (double)syncs);
+        }
+        System.out.println();
+        System.out.print(convergence(profiles, questions));
+        System.out.println();
+        System.out.print(ExamMetrics.SHARED.describe());
+    }
+
+    static void runCandidate(QuestionSource source, Profile profile, int questions, int thinkMillis, double thinkSigma,
+                             ExamMetrics.Histogram latency, LongAdder answeredTotal, ExamJournal journal,
+                             ExamSession.Listener exported)
+            throws InterruptedException, IOException {
+        long totalMillis = 60L * 60 * 1000;
+        ExamSession session = new ExamSession(source, questions, totalMillis);
+        if (exported != null) session.addListener(exported);
+        ExamJournal.Session logged = null;
+        if (journal != null) {
+            logged = journal.begin(0, questions, totalMillis, ExamJournal.POLICY_STREAK, 0,
+                session.currentDifficulty());
+            session.addListener(logged);
+        }
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int lastChange = 0;
+        while (true) {
+            long t0 = System.nanoTime();
+            AMCATSimulator.Question q = session.next();
+            long t1 = System.nanoTime();
+            if (q == null) break;
+            latency.record(t1 - t0);
+            int number = session.questionNumber();
+            profile.levelSum[number - 1].add(session.currentDifficulty());
+
+            if (thinkMillis > 0) {
+                long think = (long)(thinkMillis * 1e6 * Math.exp(thinkSigma * rnd.nextGaussian()));
+                Thread.sleep(Duration.ofNanos(Math.max(1, think)));
+            }
+            boolean right = rnd.nextDouble() < profile.pCorrect(q);
+            if (session.answer(right ? q.answer() : "?").difficultyChange != 0) lastChange = number;
+            answeredTotal.increment();
+            profile.answered.increment();
+            if (right) profile.correct.increment();
+        }
+        profile.sessions.increment();
+        profile.settledAt.add(lastChange);
+        profile.finalLevel[session.currentDifficulty() - 1].increment();
+        if (logged != null) journal.awaitDurable(logged.end(session));
+    }
+
+    static long percentile(long[] sorted, int n, double p) {
+        if (n == 0) return 0;
+        int idx = (int)Math.ceil(p * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, idx))];
+    }
+
+    private static Profile pick(List<Profile> profiles, double r) {
+        for (Profile p : profiles) {
+            r -= p.weight;
+            if (r < 0) return p;
+        }
+        return profiles.get(profiles.size() - 1);
+    }
+
+    /** Median and minimum of the full one-second windows, ignoring ramp-up and the drain at the end. */
+    private static String sustained(List<Long> perSecond) {
+        List<Long> windows;
+        synchronized (perSecond) { windows = new ArrayList<>(perSecond); }
+        if (windows.size() < 3) return "run too short for a sustained rate";
+        windows = new ArrayList<>(windows.subList(1, windows.size() - 1));
+        Collections.sort(windows);
+        return String.format("sustained %d/s median, %d/s worst second", windows.get(windows.size() / 2), windows.get(0));
+    }
+
+    /** Per profile: accuracy, final level mix, when the level stopped moving, and the mean level along the exam. */
+    static String convergence(List<Profile> profiles, int questions) {
+        int[] marks = new int[5];
+        for (int i = 0; i < marks.length; i++) marks[i] = Math.max(1, (int)Math.round(questions * (i + 1) / 5.0));
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %6s %8s %9s %22s %9s", "profile", "theta", "sessions", "accuracy",
+            "final level E/M/H %", "settled"));
+        for (int m : marks) sb.append(String.format(" %6s", "L@" + m));
+        sb.append(String.format("%n"));
+        for (Profile p : profiles) {
+            long s = p.sessions.sum();
+            if (s == 0) continue;
+            sb.append(String.format("%-10s %6.2f %8d %8.1f%% %8.0f/%5.0f/%5.0f %9.1f", p.name, p.theta, s,
+                100.0 * p.correct.sum() / Math.max(1, p.answered.sum()), 100.0 * p.finalLevel[0].sum() / s,
+                100.0 * p.finalLevel[1].sum() / s, 100.0 * p.finalLevel[2].sum() / s, p.settledAt.sum() / (double)s));
+            for (int m : marks) sb.append(String.format(" %6.2f", p.levelSum[m - 1].sum() / (double)s));
+            sb.append(String.format("%n"));
+        }
+        sb.append(String.format("(settled = mean question number of the last level change; L@n = mean level at question n, 1=Easy 3=Hard)%n"));
+        return sb.toString();
+    }
+}
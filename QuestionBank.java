@@ -0,0 +1,202 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Pre-built question bank in a compact binary file, served from a read-only
+ * memory map (so the OS page cache shares one copy across processes)
+ * - Opening the bank only maps the file and checks the header, no parsing
+ * - Entries are sorted by (difficulty, type); the index gives each bucket's
+ *   first entry and size, so lookups are plain arithmetic
+ * - Entries hold a QuestionTemplate id and its packed parameters instead
+ *   of text, so get() decodes no strings and the file is 24 bytes a question
+ *
+ * File layout (big-endian):
+ *   header  : magic, version, count, unused                               [32 bytes]
+ *   index   : [3 difficulties][10 types] x (int first, int count)         [240 bytes]
+ *   entries : count x 24 bytes
+ *             id, difficulty(b), type(b), topic(b), template(b),
+ *             params(long), canonicalAnswer(long)
+ *
+ * Usage: java QuestionBank build <file> <perType> [seed]
+ *        java QuestionBank info <file>
+ */
+public class QuestionBank implements Closeable {
+
+    static final int MAGIC = 0x51424E4B; // "QBNK"
+    static final int VERSION = 2; // 1 stored prompt text in a string heap
+
+    private static final int HEADER_SIZE = 32;
+    private static final int INDEX_SIZE = 3 * 10 * 8;
+    private static final int ENTRIES_OFFSET = HEADER_SIZE + INDEX_SIZE;
+    private static final int ENTRY_SIZE = 24;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private final int count;
+
+    private QuestionBank(Path path, FileChannel channel, MappedByteBuffer buf) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.buf = buf;
+        if (buf.capacity() < ENTRIES_OFFSET || buf.getInt(0) != MAGIC) throw new IOException("Not a question bank file");
+        if (buf.getInt(4) != VERSION) {
+            throw new IOException("Unsupported question bank version " + buf.getInt(4) + ", rebuild it with: java QuestionBank build");
+        }
+        this.count = buf.getInt(8);
+        if (count < 0 || ENTRIES_OFFSET + (long)count * ENTRY_SIZE > buf.capacity()) {
+            throw new IOException("Truncated question bank: " + count + " entries need "
+                + (ENTRIES_OFFSET + (long)count * ENTRY_SIZE) + " bytes, file has " + buf.capacity());
+        }
+    }
+
+    static QuestionBank open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("Question bank larger than 2 GB");
+            return new QuestionBank(file, ch, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    Path path() { return path; }
+    int size() { return count; }
+
+    /** Number of entries for one (difficulty, type) bucket. */
+    int count(int difficulty, int type) {
+        return buf.getInt(HEADER_SIZE + bucket(difficulty, type) * 8 + 4);
+    }
+
+    /** Ordinal of the k-th entry in a (difficulty, type) bucket. */
+    int ordinal(int difficulty, int type, int k) {
+        return buf.getInt(HEADER_SIZE + bucket(difficulty, type) * 8) + k;
+    }
+
+    int id(int ord) { return buf.getInt(entry(ord)); }
+    int difficulty(int ord) { return buf.get(entry(ord) + 4); }
+    int type(int ord) { return buf.get(entry(ord) + 5); }
+    Topic topic(int ord) { return Topic.values()[buf.get(entry(ord) + 6)]; }
+
+    /** Decodes one entry into a Question for the regular session loop. */
+    AMCATSimulator.Question get(int ord) {
+        int e = entry(ord);
+        return new AMCATSimulator.Question(buf.getInt(e), QuestionTemplate.byId(buf.get(e + 7)),
+            buf.getLong(e + 8), buf.getLong(e + 16));
+    }
+
+    /** Random draws from the bank, one Source per session (not thread-safe). */
+    static class Source implements QuestionSource {
+        private final QuestionBank bank;
+        private final SplittableRandom rand;
+
+        Source(QuestionBank bank, SplittableRandom rand) {
+            this.bank = bank;
+            this.rand = rand;
+        }
+
+        @Override
+        public AMCATSimulator.Question next(int difficulty) {
+            int d = Math.max(1, Math.min(3, difficulty));
+            int type = rand.nextInt(10);
+            for (int tries = 0; tries < 10; tries++, type = (type + 1) % 10) {
+                int n = bank.count(d, type);
+                if (n > 0) return bank.get(bank.ordinal(d, type, rand.nextInt(n)));
+            }
+            throw new IllegalStateException("Question bank has no entries for difficulty " + d);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int bucket(int difficulty, int type) {
+        return (Math.max(1, Math.min(3, difficulty)) - 1) * 10 + type % 10;
+    }
+
+    private int entry(int ord) {
+        if (ord < 0 || ord >= count) throw new IndexOutOfBoundsException("Entry " + ord + " of " + count);
+        return ENTRIES_OFFSET + ord * ENTRY_SIZE;
+    }
+
+    // ---- building ----
+
+    /** Generates {@code perType} questions for every (difficulty, type) and writes the bank file. */
+    static void build(Path file, int perType, long seed) throws IOException {
+        int total = Math.multiplyExact(perType, 30);
+        if (ENTRIES_OFFSET + (long)total * ENTRY_SIZE > Integer.MAX_VALUE) throw new IOException("Question bank larger than 2 GB");
+        QuestionGenerator gen = QuestionGenerator.forSession(seed, "bank");
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer entries = ByteBuffer.allocate(64 * 1024 / ENTRY_SIZE * ENTRY_SIZE);
+            long entryPos = ENTRIES_OFFSET;
+            ByteBuffer index = ByteBuffer.allocate(INDEX_SIZE);
+            int ord = 0;
+
+            for (int d = 1; d <= 3; d++) {
+                for (int type = 0; type < 10; type++) {
+                    index.putInt(ord).putInt(perType);
+                    for (int k = 0; k < perType; k++, ord++) {
+                        AMCATSimulator.Question q = d == 1 ? gen.generateEasyQuestion(type)
+                            : d == 2 ? gen.generateMediumQuestion(type) : gen.generateHardQuestion(type);
+                        entries.putInt(q.id).put((byte)d).put((byte)type)
+                            .put((byte)Topic.of(d, type).ordinal()).put((byte)q.template.id)
+                            .putLong(q.params).putLong(q.canonicalAnswer);
+                        if (!entries.hasRemaining()) {
+                            entryPos += flush(ch, entries, entryPos);
+                        }
+                    }
+                }
+            }
+            flush(ch, entries, entryPos);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(total);
+            header.clear();
+            index.flip();
+            ch.write(header, 0);
+            ch.write(index, HEADER_SIZE);
+            ch.force(true);
+        }
+    }
+
+    private static int flush(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        b.flip();
+        int n = b.remaining();
+        while (b.hasRemaining()) ch.write(b, pos + (n - b.remaining()));
+        b.clear();
+        return n;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("build")) {
+            Path file = Paths.get(args[1]);
+            int perType = Integer.parseInt(args[2]);
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+            long start = System.nanoTime();
+            build(file, perType, seed);
+            System.out.printf("Built %d questions into %s (%d bytes) in %.2f s, seed %d%n",
+                perType * 30, file, Files.size(file), (System.nanoTime() - start) / 1e9, seed);
+        } else if (args.length >= 2 && args[0].equals("info")) {
+            try (QuestionBank bank = open(Paths.get(args[1]))) {
+                System.out.println("Questions: " + bank.size());
+                for (int d = 1; d <= 3; d++) {
+                    System.out.print(AMCATSimulator.diffName(d) + ":");
+                    for (int t = 0; t < 10; t++) System.out.print(" " + bank.count(d, t));
+                    System.out.println();
+                }
+            }
+        } else {
+            System.out.println("Usage: java QuestionBank build <file> <perType> [seed]");
+            System.out.println("       java QuestionBank info <file>");
+        }
+    }
+}
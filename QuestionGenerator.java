@@ -0,0 +1,393 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Random question generators for all three difficulty tiers
+ * - Each session/worker owns one generator and its SplittableRandom stream,
+ *   so draws never contend and an instance is NOT meant to be shared
+ * - forSession(masterSeed, key) reproduces the exact same paper for audits
+ * - Question IDs come from a shared IdSequence in lock-free blocks
+ * - Every generator works backward from the answer: it draws the answer (or
+ *   a row of a precomputed table of valid parameters) and derives the prompt,
+ *   so each draw is O(1), exact in integer arithmetic and never retries
+ * - A draw only packs the prompt's numbers into a long next to its shared
+ *   QuestionTemplate; no text is formatted until the question is shown
+ */
+class QuestionGenerator implements QuestionSource {
+
+    /** Global question-ID sequence, handed out in blocks to avoid contention. */
+    static class IdSequence {
+        static final IdSequence SHARED = new IdSequence(1000);
+
+        private final AtomicInteger next;
+
+        IdSequence(int first) {
+            this.next = new AtomicInteger(first);
+        }
+
+        /** Reserves {@code count} consecutive IDs and returns the first. */
+        int reserve(int count) {
+            return next.getAndAdd(count);
+        }
+    }
+
+    private static final int ID_BLOCK = 64;
+
+    // ---- lookup tables, built once ----
+
+    static final int[] TRIANGULAR = new int[64];    // n(n+1)/2
+    static final long[] FACTORIAL = new long[21];   // 20! is the largest that fits a long
+    static final int[][] POW = new int[11][11];     // base^exp for base, exp <= 10, capped at int range
+    static final int[][] PERMUTATIONS = new int[11][11]; // nPr
+    static final long[] HALF_DEGREES = new long[361]; // canonical clock answers, "0" .. "180", "97.5"
+    private static final long OPTION_A = AnswerForm.ofOption(0);
+    private static final long OPTION_C = AnswerForm.ofOption(2);
+
+    // rows of parameters whose answer is a whole number, packed one byte per field
+    private static final int[] WORK_PAIRS;      // medium: A, B days with d1*d2/(d1+d2) integral
+    private static final int[] INTEREST_PAIRS;  // medium: principal/1000, rate with exact 2-year CI
+    private static final int[] MIXTURES;        // medium: qty1, price1, qty2, price2 with integral average
+    private static final int[] SEQUENTIAL_WORK; // hard: A days, B days, days A worked; B finishes in whole days
+    private static final int[] PIPES;           // hard: fill1, fill2, empty with integral fill time
+
+    static {
+        for (int n = 0; n < TRIANGULAR.length; n++) TRIANGULAR[n] = n * (n + 1) / 2;
+        FACTORIAL[0] = 1;
+        for (int n = 1; n < FACTORIAL.length; n++) FACTORIAL[n] = FACTORIAL[n - 1] * n;
+        for (int base = 0; base < POW.length; base++) {
+            long v = 1;
+            for (int exp = 0; exp < POW[base].length; exp++, v = Math.min(v * base, Integer.MAX_VALUE)) {
+                POW[base][exp] = (int)v;
+            }
+        }
+        for (int n = 0; n < PERMUTATIONS.length; n++) {
+            for (int r = 0; r <= n; r++) PERMUTATIONS[n][r] = (int)(FACTORIAL[n] / FACTORIAL[n - r]);
+        }
+        for (int h = 0; h < HALF_DEGREES.length; h++) {
+            HALF_DEGREES[h] = AnswerForm.parse((h / 2) + (h % 2 == 0 ? "" : ".5"));
+        }
+
+        IntTable t = new IntTable();
+        for (int d1 = 3; d1 <= 40; d1++) {
+            for (int d2 = d1; d2 <= 60; d2++) {
+                if (d1 * d2 % (d1 + d2) == 0) t.add(d1, d2, 0, 0);
+            }
+        }
+        WORK_PAIRS = t.toArray();
+        for (int k = 5; k <= 9; k++) {
+            for (int rate = 5; rate <= 8; rate++) {
+                if (k * 1000L * rate * (200 + rate) % 10000 == 0) t.add(k, rate, 0, 0);
+            }
+        }
+        INTEREST_PAIRS = t.toArray();
+        for (int q1 = 10; q1 < 30; q1++) {
+            for (int q2 = 10; q2 < 30; q2++) {
+                for (int p1 = 10; p1 < 20; p1++) {
+                    for (int p2 = 15; p2 < 25; p2++) {
+                        if ((q1 * p1 + q2 * p2) % (q1 + q2) == 0) t.add(q1, p1, q2, p2);
+                    }
+                }
+            }
+        }
+        MIXTURES = t.toArray();
+        for (int d1 = 8; d1 < 16; d1++) {
+            for (int d2 = 12; d2 < 20; d2++) {
+                for (int w = 2; w < d1; w++) {
+                    if ((d1 - w) * d2 % d1 == 0) t.add(d1, d2, w, 0);
+                }
+            }
+        }
+        SEQUENTIAL_WORK = t.toArray();
+        for (int f1 = 10; f1 < 20; f1++) {
+            for (int f2 = 15; f2 < 25; f2++) {
+                for (int e = 20; e < 35; e++) {
+                    int den = f2 * e + f1 * e - f1 * f2; // 1/f1 + 1/f2 - 1/e = den / (f1 f2 e)
+                    if (den > 0 && f1 * f2 * e % den == 0) t.add(f1, f2, e, 0);
+                }
+            }
+        }
+        PIPES = t.toArray();
+    }
+
+    /** Growable list of packed rows used while building the tables. */
+    private static class IntTable {
+        private int[] rows = new int[256];
+        private int size;
+
+        void add(int a, int b, int c, int d) {
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = a << 24 | b << 16 | c << 8 | d;
+        }
+
+        int[] toArray() {
+            int[] out = Arrays.copyOf(rows, size);
+            size = 0;
+            return out;
+        }
+    }
+
+    private static int field(int row, int i) {
+        return (row >>> (24 - 8 * i)) & 0xFF;
+    }
+
+    private final SplittableRandom rand;
+    private final IdSequence ids;
+    private int idNext;
+    private int idLimit;
+
+    QuestionGenerator(SplittableRandom rand, IdSequence ids) {
+        this.rand = rand;
+        this.ids = ids;
+    }
+
+    /** Generator whose stream depends only on the master seed and the session key. */
+    static QuestionGenerator forSession(long masterSeed, String sessionKey) {
+        return new QuestionGenerator(new SplittableRandom(seedFor(masterSeed, sessionKey)), IdSequence.SHARED);
+    }
+
+    static long seedFor(long masterSeed, String sessionKey) {
+        long h = 0xcbf29ce484222325L; // FNV-1a 64
+        for (int i = 0; i < sessionKey.length(); i++) {
+            h ^= sessionKey.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix64(masterSeed ^ mix64(h));
+    }
+
+    static long mix64(long z) { // SplitMix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private int nextId() {
+        if (idNext == idLimit) {
+            idNext = ids.reserve(ID_BLOCK);
+            idLimit = idNext + ID_BLOCK;
+        }
+        return idNext++;
+    }
+
+    @Override
+    public AMCATSimulator.Question next(int difficulty) {
+        return generateRandomQuestion(difficulty);
+    }
+
+    AMCATSimulator.Question generateRandomQuestion(int difficulty) {
+        int type = rand.nextInt(10); // 10 different question types
+        
+        switch (difficulty) {
+            case 1: return generateEasyQuestion(type);
+            case 2: return generateMediumQuestion(type);
+            case 3: return generateHardQuestion(type);
+            default: return generateMediumQuestion(type);
+        }
+    }
+
+    AMCATSimulator.Question generateEasyQuestion(int type) {
+        int id = nextId();
+        int t = type % 10;
+
+        switch (t) {
+            case 0: { // Simple linear equation
+                int a = rand.nextInt(5) + 2;
+                int b = rand.nextInt(20) + 5;
+                int x = rand.nextInt(10) + 1;
+                return q(id, 1, t, pack(a, b, a * x + b, 0), AnswerForm.ofInt(x));
+            }
+            case 1: { // Number series
+                int start = rand.nextInt(10) + 1;
+                int diff = rand.nextInt(5) + 1;
+                return q(id, 1, t, pack(start, start + diff, start + 2 * diff, start + 3 * diff),
+                    AnswerForm.ofInt(start + 4 * diff));
+            }
+            case 2: { // Simple percentage
+                int whole = (rand.nextInt(9) + 1) * 20; // multiple of 4, so every quarter is whole
+                int percent = (rand.nextInt(4) + 1) * 25;
+                return q(id, 1, t, pack(percent, whole, 0, 0), AnswerForm.ofInt(whole * percent / 100));
+            }
+            case 3: { // Simple average
+                int a = rand.nextInt(20) + 10;
+                int b = rand.nextInt(20) + 10;
+                int c = rand.nextInt(18) + 10;
+                c += (3 - (a + b + c) % 3) % 3; // make the total divisible by 3
+                return q(id, 1, t, pack(a, b, c, 0), AnswerForm.ofInt((a + b + c) / 3));
+            }
+            case 4: { // Age problems
+                int myAge = rand.nextInt(30) + 20;
+                int years = rand.nextInt(10) + 5;
+                return q(id, 1, t, pack(myAge, years, 0, 0), AnswerForm.ofInt(myAge + years));
+            }
+            case 5: { // Simple multiplication
+                int a = rand.nextInt(10) + 5;
+                int b = rand.nextInt(10) + 5;
+                return q(id, 1, t, pack(a, b, 0, 0), AnswerForm.ofInt(a * b));
+            }
+            case 6: // Odd one out: fixed item, shared option table
+                return q(id, 1, t, 0, OPTION_C);
+            case 7: { // Simple ratio
+                int ratio1 = rand.nextInt(3) + 1;
+                int ratio2 = rand.nextInt(3) + 1;
+                int unit = rand.nextInt(10) + 3;
+                return q(id, 1, t, pack(unit * (ratio1 + ratio2), ratio1, ratio2, 0), AnswerForm.ofInt(unit * ratio1));
+            }
+            case 8: // Antonym: the row picks the word and its option set
+                return q(id, 1, t, pack(rand.nextInt(3), 0, 0, 0), OPTION_A);
+            default: { // Simple addition
+                int a = rand.nextInt(50) + 10;
+                int b = rand.nextInt(50) + 10;
+                return q(id, 1, t, pack(a, b, 0, 0), AnswerForm.ofInt(a + b));
+            }
+        }
+    }
+
+    AMCATSimulator.Question generateMediumQuestion(int type) {
+        int id = nextId();
+        int t = type % 10;
+
+        switch (t) {
+            case 0: { // Train/Speed problems
+                int speed = rand.nextInt(16) + 5;
+                int time = rand.nextInt(8) + 3;
+                return q(id, 2, t, pack(speed * time, time, 0, 0), AnswerForm.ofInt(speed));
+            }
+            case 1: { // Ratio with sum
+                int ratio1 = rand.nextInt(4) + 2;
+                int ratio2 = rand.nextInt(4) + 3;
+                int sum = (ratio1 + ratio2) * (rand.nextInt(5) + 3);
+                int num1 = sum * ratio1 / (ratio1 + ratio2);
+                return q(id, 2, t, pack(ratio1, ratio2, sum, 0), AnswerForm.ofPair(num1, sum - num1));
+            }
+            case 2: { // Profit/Loss percentage
+                int cp = (rand.nextInt(5) + 5) * 20; // multiple of 20, so 5% steps are whole
+                int profitPercent = (rand.nextInt(4) + 1) * 5;
+                return q(id, 2, t, pack(cp, profitPercent, 0, 0), AnswerForm.ofInt(cp + cp * profitPercent / 100));
+            }
+            case 3: { // Time and Work
+                int row = WORK_PAIRS[rand.nextInt(WORK_PAIRS.length)];
+                int days1 = field(row, 0);
+                int days2 = field(row, 1);
+                return q(id, 2, t, pack(days1, days2, 0, 0), AnswerForm.ofInt(days1 * days2 / (days1 + days2)));
+            }
+            case 4: { // Compound interest
+                int row = INTEREST_PAIRS[rand.nextInt(INTEREST_PAIRS.length)];
+                int principal = field(row, 0) * 1000;
+                int rate = field(row, 1);
+                int ci = principal * rate * (200 + rate) / 10000; // P((1+r)^2 - 1), exact for table rows
+                return q(id, 2, t, pack(principal, rate, 0, 0), AnswerForm.ofInt(ci));
+            }
+            case 5: { // Geometric progression
+                int first = rand.nextInt(5) + 2;
+                int ratio = rand.nextInt(3) + 2;
+                return q(id, 2, t, pack(first, first * ratio, first * ratio * ratio, 0),
+                    AnswerForm.ofInt(first * POW[ratio][3]));
+            }
+            case 6: { // Permutation
+                int n = rand.nextInt(4) + 4;
+                int r = rand.nextInt(n-1) + 1;
+                return q(id, 2, t, pack(r, n, 0, 0), AnswerForm.ofInt(PERMUTATIONS[n][r]));
+            }
+            case 7: { // Probability
+                int total = rand.nextInt(10) + 10;
+                int favorable = rand.nextInt(total/2) + 1;
+                return q(id, 2, t, pack(total, favorable, 0, 0), AnswerForm.ofFraction(favorable, total));
+            }
+            case 8: // Blood relation: the row picks the relation and its option set
+                return q(id, 2, t, pack(rand.nextInt(3), 0, 0, 0), OPTION_A);
+            default: { // Mixture problem
+                int row = MIXTURES[rand.nextInt(MIXTURES.length)];
+                int qty1 = field(row, 0);
+                int price1 = field(row, 1);
+                int qty2 = field(row, 2);
+                int price2 = field(row, 3);
+                int avgPrice = (qty1*price1 + qty2*price2) / (qty1+qty2);
+                return q(id, 2, t, pack(qty1, price1, qty2, price2), AnswerForm.ofInt(avgPrice));
+            }
+        }
+    }
+
+    AMCATSimulator.Question generateHardQuestion(int type) {
+        int id = nextId();
+        int t = type % 10;
+
+        switch (t) {
+            case 0: { // Sum of n natural numbers
+                int n = rand.nextInt(13) + 14;
+                return q(id, 3, t, pack(TRIANGULAR[n], 0, 0, 0), AnswerForm.ofInt(n));
+            }
+            case 1: { // Complex work problem
+                int row = SEQUENTIAL_WORK[rand.nextInt(SEQUENTIAL_WORK.length)];
+                int days1 = field(row, 0);
+                int days2 = field(row, 1);
+                int workedDays = field(row, 2);
+                int total = workedDays + (days1 - workedDays) * days2 / days1;
+                return q(id, 3, t, pack(days1, days2, workedDays, 0), AnswerForm.ofInt(total));
+            }
+            case 2: { // Calendar problems: options are the answer day and the three after it
+                int startDay = rand.nextInt(7);
+                int addDays = rand.nextInt(100) + 50;
+                return q(id, 3, t, pack(startDay, addDays, (startDay + addDays) % 7, 0), OPTION_A);
+            }
+            case 3: { // Logarithm
+                int base = rand.nextInt(3) + 2;
+                int exp = rand.nextInt(4) + 2;
+                return q(id, 3, t, pack(base, POW[base][exp], 0, 0), AnswerForm.ofInt(exp));
+            }
+            case 4: { // Arithmetic progression
+                int first = rand.nextInt(10) + 5;
+                int diff = rand.nextInt(5) + 2;
+                int n = rand.nextInt(10) + 10;
+                int sum = n * (2*first + (n-1)*diff) / 2;
+                return q(id, 3, t, pack(n, first, diff, 0), AnswerForm.ofInt(sum));
+            }
+            case 5: { // Pipe and cistern
+                int row = PIPES[rand.nextInt(PIPES.length)];
+                int fill1 = field(row, 0);
+                int fill2 = field(row, 1);
+                int empty = field(row, 2);
+                int time = fill1 * fill2 * empty / (fill2 * empty + fill1 * empty - fill1 * fill2);
+                return q(id, 3, t, pack(fill1, fill2, empty, 0), AnswerForm.ofInt(time));
+            }
+            case 6: { // Clock angle
+                int hour = rand.nextInt(11) + 1;
+                int minute = rand.nextInt(12) * 5;
+                int halfDegrees = Math.abs(60 * (hour % 12) - 11 * minute); // |30h + m/2 - 6m| doubled
+                if (halfDegrees > 360) halfDegrees = 720 - halfDegrees;
+                return q(id, 3, t, pack(hour, minute, halfDegrees, 0), HALF_DEGREES[halfDegrees]);
+            }
+            case 7: // Syllogism (complex): fixed item
+                return q(id, 3, t, 0, OPTION_A);
+            case 8: { // Data sufficiency
+                int x = rand.nextInt(20) + 10;
+                return q(id, 3, t, pack(x + 5, 2 * x, 0, 0), AnswerForm.ofOption(3));
+            }
+            default: { // Cube root
+                int num = rand.nextInt(9) + 2;
+                return q(id, 3, t, pack(POW[num][3], 0, 0, 0), AnswerForm.ofInt(num));
+            }
+        }
+    }
+
+    private static AMCATSimulator.Question q(int id, int difficulty, int type, long params, long canonicalAnswer) {
+        return new AMCATSimulator.Question(id, QuestionTemplate.of(difficulty, type), params, canonicalAnswer);
+    }
+
+    private static long pack(int a, int b, int c, int d) {
+        return QuestionTemplate.pack(a, b, c, d);
+    }
+
+    static long factorial(int n) {
+        if (n < 0 || n >= FACTORIAL.length) throw new ArithmeticException(n + "! does not fit a long");
+        return FACTORIAL[n];
+    }
+
+    static int gcd(int a, int b) {
+        while (b != 0) {
+            int temp = b;
+            b = a % b;
+            a = temp;
+        }
+        return a;
+    }
+}
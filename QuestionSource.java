@@ -0,0 +1,8 @@
+/**
+ * Anything an ExamSession can draw its questions from
+ * - QuestionGenerator builds them on demand
+ * - QuestionBank.Source serves them from a pre-built bank file
+ */
+interface QuestionSource {
+    AMCATSimulator.Question next(int difficulty);
+}
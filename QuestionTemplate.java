@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precompiled prompt template for one generator case (difficulty, type)
+ * - A Question stores only its template and up to four 16-bit parameters
+ *   packed in a long; the prompt text exists only while render() writes it
+ * - Patterns are split once, at class load, into literal parts and
+ *   placeholders, so rendering is appends only: no String.format, no
+ *   parsing, no intermediate strings
+ * - Placeholders: {n} parameter n as a number, {n:2} zero-padded to two
+ *   digits, {n#c} word column c of the template's word table at row n
+ * - Options are shared, immutable tables: one fixed set, or one set per
+ *   value of a selecting parameter (e.g. the antonym row, the weekday)
+ */
+final class QuestionTemplate {
+
+    static final int PARAMS = 4;
+
+    private static final int NUMBER = -1, TWO_DIGITS = -2; // styles; >= 0 is a word column
+    private static final QuestionTemplate[] BY_ID = new QuestionTemplate[30];
+
+    private static final String[] WEEKDAYS = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
+
+    static {
+        // easy
+        add(1, 0, "If {0}x + {1} = {2}, what is x?");
+        add(1, 1, "Find the next number: {0}, {1}, {2}, {3}, ?");
+        add(1, 2, "What is {0}% of {1}?");
+        add(1, 3, "What is the average of {0}, {1}, and {2}?");
+        add(1, 4, "I am {0} years old. How old will I be in {1} years?");
+        add(1, 5, "What is {0} × {1}?");
+        add(1, 6, "Which one is NOT a fruit?").options(-1, new String[][]{{"Apple", "Banana", "Carrot", "Mango"}});
+        add(1, 7, "Divide {0} in the ratio {1}:{2}. What is the first part?");
+        add(1, 8, "What is the opposite of '{0#0}'?").words(new String[][]{{"Happy"}, {"Hot"}, {"Big"}})
+            .options(0, new String[][]{
+                {"Sad", "Joyful", "Excited", "Cheerful"},
+                {"Cold", "Warm", "Boiling", "Heated"},
+                {"Small", "Large", "Huge", "Giant"}});
+        add(1, 9, "What is {0} + {1}?");
+        // medium
+        add(2, 0, "A train {0}m long passes a pole in {1} seconds. What is the speed (m/s)?");
+        add(2, 1, "The ratio of two numbers is {0}:{1} and their sum is {2}. What are the numbers? (smaller,larger)");
+        add(2, 2, "An item is bought for ₹{0} and sold at {1}% profit. What is the selling price?");
+        add(2, 3, "A can complete work in {0} days, B in {1} days. Working together, how many days?");
+        add(2, 4, "Find compound interest on ₹{0} at {1}% for 2 years.");
+        add(2, 5, "Find the next term: {0}, {1}, {2}, ?");
+        add(2, 6, "How many ways can you arrange {0} items from {1} distinct items?");
+        add(2, 7, "In a bag of {0} balls, {1} are red. What is the probability of drawing a red ball? (as fraction, e.g., 1/4)");
+        add(2, 8, "If {0#0} is {0#1}, then what is B to A's child?")
+            .words(new String[][]{{"A's mother", "B"}, {"A's brother", "C"}, {"A's sister", "D"}})
+            .options(0, new String[][]{
+                {"grandmother", "Sibling", "Cousin", "Niece"},
+                {"uncle", "Sibling", "Cousin", "Niece"},
+                {"aunt", "Sibling", "Cousin", "Niece"}});
+        add(2, 9, "Mix {0}kg at ₹{1}/kg with {2}kg at ₹{3}/kg. Average price/kg?");
+        // hard
+        add(3, 0, "If sum of first n natural numbers is {0}, find n.");
+        add(3, 1, "A can finish work in {0} days, B in {1} days. A works for {2} days then B finishes. Total days?");
+        String[][] weekdays = new String[7][];
+        String[][] rotations = new String[7][]; // options for each answer day: it and the next three
+        for (int d = 0; d < 7; d++) {
+            weekdays[d] = new String[]{WEEKDAYS[d]};
+            rotations[d] = new String[]{WEEKDAYS[d], WEEKDAYS[(d + 1) % 7], WEEKDAYS[(d + 2) % 7], WEEKDAYS[(d + 3) % 7]};
+        }
+        add(3, 2, "If today is {0#0}, what day will it be {1} days later?").words(weekdays).options(2, rotations);
+        add(3, 3, "What is log{0}({1})?");
+        add(3, 4, "Sum of {0} terms of AP with first term {1} and common difference {2}?");
+        add(3, 5, "Pipe A fills tank in {0}h, B in {1}h, C empties in {2}h. All open, tank fills in?");
+        add(3, 6, "What is the angle between hour and minute hands at {0}:{1:2}?").halfAnswer(2);
+        add(3, 7, "All X are Y. All Y are Z. Some Z are W. Which conclusion is valid?")
+            .options(-1, new String[][]{{"All X are Z", "Some W are X", "No X are W", "None of these"}});
+        add(3, 8, "To find the value of x: (1) x + 5 = {0}  (2) 2x = {1}. Which statement(s) sufficient?")
+            .options(-1, new String[][]{{"(1) alone", "(2) alone", "Both together", "Each alone"}});
+        add(3, 9, "What is the cube root of {0}?");
+    }
+
+    final int id;
+    final int difficulty;
+    final int type;
+    private final String[] literals; // literals[i] precedes placeholder i; the last one ends the prompt
+    private final int[] params;      // parameter index per placeholder
+    private final int[] styles;      // NUMBER, TWO_DIGITS or a word column
+    private String[][] words;
+    private String[][] optionSets;
+    private int optionParam = -1;    // parameter selecting the option set, -1 for a single set
+    private int halfAnswerParam = -1; // answer shown as half units ("97.5"), for the clock
+
+    private QuestionTemplate(int difficulty, int type, String pattern) {
+        this.id = (difficulty - 1) * 10 + type;
+        this.difficulty = difficulty;
+        this.type = type;
+        List<String> lits = new ArrayList<>();
+        List<int[]> holes = new ArrayList<>();
+        int from = 0;
+        for (int open; (open = pattern.indexOf('{', from)) >= 0; ) {
+            int close = pattern.indexOf('}', open);
+            lits.add(pattern.substring(from, open));
+            String spec = pattern.substring(open + 1, close);
+            int param = spec.charAt(0) - '0';
+            int style = spec.length() == 1 ? NUMBER
+                : spec.charAt(1) == ':' ? TWO_DIGITS : Integer.parseInt(spec.substring(2));
+            holes.add(new int[]{param, style});
+            from = close + 1;
+        }
+        lits.add(pattern.substring(from));
+        this.literals = lits.toArray(new String[0]);
+        this.params = new int[holes.size()];
+        this.styles = new int[holes.size()];
+        for (int i = 0; i < holes.size(); i++) {
+            params[i] = holes.get(i)[0];
+            styles[i] = holes.get(i)[1];
+        }
+    }
+
+    private static QuestionTemplate add(int difficulty, int type, String pattern) {
+        QuestionTemplate t = new QuestionTemplate(difficulty, type, pattern);
+        BY_ID[t.id] = t;
+        return t;
+    }
+
+    private QuestionTemplate words(String[][] rows) {
+        this.words = rows;
+        return this;
+    }
+
+    private QuestionTemplate options(int param, String[][] sets) {
+        this.optionParam = param;
+        this.optionSets = sets;
+        return this;
+    }
+
+    private QuestionTemplate halfAnswer(int param) {
+        this.halfAnswerParam = param;
+        return this;
+    }
+
+    static QuestionTemplate of(int difficulty, int type) {
+        return BY_ID[(difficulty - 1) * 10 + type];
+    }
+
+    static QuestionTemplate byId(int id) {
+        if (id < 0 || id >= BY_ID.length) throw new IllegalArgumentException("No question template " + id);
+        return BY_ID[id];
+    }
+
+    // ---- parameters ----
+
+    static long pack(int a, int b, int c, int d) {
+        return (a & 0xFFFFL) | (b & 0xFFFFL) << 16 | (c & 0xFFFFL) << 32 | (d & 0xFFFFL) << 48;
+    }
+
+    static int param(long params, int i) {
+        return (int)(params >>> (16 * i)) & 0xFFFF;
+    }
+
+    // ---- rendering ----
+
+    void render(long params, Appendable out) throws IOException {
+        for (int i = 0; i < this.params.length; i++) {
+            out.append(literals[i]);
+            int v = param(params, this.params[i]);
+            if (styles[i] >= 0) out.append(words[v][styles[i]]);
+            else appendNumber(out, v, styles[i] == TWO_DIGITS ? 2 : 1);
+        }
+        out.append(literals[literals.length - 1]);
+    }
+
+    /** The shared option table (never modify it), or null for a free-answer question. */
+    String[] options(long params) {
+        if (optionSets == null) return null;
+        return optionSets[optionParam < 0 ? 0 : param(params, optionParam)];
+    }
+
+    /** Display form of the answer; only the clock needs more than the canonical form. */
+    String answer(long params, long canonical) {
+        if (halfAnswerParam >= 0) {
+            int half = param(params, halfAnswerParam);
+            return (half / 2) + (half % 2 == 0 ? "" : ".5");
+        }
+        return AnswerForm.format(canonical);
+    }
+
+    private static void appendNumber(Appendable out, int v, int minDigits) throws IOException {
+        int digits = 1;
+        for (int p = 10; p <= v && digits < 5; p *= 10) digits++;
+        for (int i = digits; i < minDigits; i++) out.append('0');
+        for (int p = QuestionGenerator.POW[10][digits - 1]; p > 0; p /= 10) out.append((char)('0' + v / p % 10));
+    }
+}
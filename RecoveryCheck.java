@@ -0,0 +1,336 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Self-check of crash recovery in the three append-only files
+ * - ExamJournal: writes interleaved exams, then reopens a copy cut at every
+ *   byte offset; the exams found open (answers, score, level, questions
+ *   asked, per-topic counts) must be exactly those of the records wholly
+ *   inside the cut, the torn tail must be truncated away and new sessions
+ *   must not reuse an id. Then flips one byte in each record in turn:
+ *   replay must stop just before it
+ * - ScoreStore: cuts at every byte; the count must be the whole records
+ *   kept, every kept record, date scan and candidate lookup must read back
+ *   as written (also around a full index block, with the index file intact
+ *   or lost) and the store must take appends again
+ * - ResponseLog: cuts at every byte after the header; only complete row
+ *   groups may survive, row for row, and the log must take appends again
+ * - Prints the first mismatches and exits 1 if there are any
+ *
+ * Usage: java RecoveryCheck [work-dir]   (default: a temporary directory)
+ */
+public class RecoveryCheck {
+
+    private static final int SHOWN = 10;
+    private static long failures;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = args.length > 0 ? Files.createDirectories(Paths.get(args[0])) : Files.createTempDirectory("recovery");
+        try {
+            checkJournal(dir);
+            checkScores(dir);
+            checkResponses(dir);
+        } finally {
+            if (args.length == 0) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                    for (Path f : files) Files.delete(f);
+                }
+                Files.delete(dir);
+            }
+        }
+        System.out.println(failures == 0 ? "OK" : failures + " failures");
+        if (failures > 0) System.exit(1);
+    }
+
+    private static void fail(String what) {
+        if (failures++ < SHOWN) System.out.println("  FAIL " + what);
+    }
+
+    /** Copies the first {@code length} bytes of {@code from}, optionally with byte {@code flip} inverted. */
+    private static void cut(byte[] from, int length, int flip, Path to) throws IOException {
+        byte[] b = Arrays.copyOf(from, length);
+        if (flip >= 0) b[flip] ^= (byte)0xFF;
+        Files.write(to, b);
+    }
+
+    // ---- exam journal ----
+
+    /** What the journal should say about one exam, tracked alongside the real session. */
+    private static class Expected {
+        final long id, paperSeed, candidate;
+        final int numQuestions, startLevel;
+        final List<Long> fingerprints = new ArrayList<>();
+        final BitSet correct = new BitSet();
+        final int[] topicAsked = new int[Topic.values().length];
+        final int[] topicCorrect = new int[Topic.values().length];
+        int answered, score, level;
+
+        Expected(long id, long paperSeed, int numQuestions, long candidate, int startLevel) {
+            this.id = id;
+            this.paperSeed = paperSeed;
+            this.numQuestions = numQuestions;
+            this.candidate = candidate;
+            this.startLevel = startLevel;
+            this.level = startLevel;
+        }
+
+        String describe() {
+            return describe(id, paperSeed, numQuestions, candidate, startLevel, fingerprints.size(), answered, score,
+                level, correct, fingerprints.toString(), topicAsked, topicCorrect);
+        }
+
+        static String describe(ExamJournal.Interrupted e) {
+            List<Long> fps = new ArrayList<>();
+            for (int i = 0; i < e.asked; i++) fps.add(e.fingerprints[i]);
+            return describe(e.session, e.paperSeed, e.numQuestions, e.candidate, e.startLevel, e.asked, e.answered,
+                e.score, e.level, e.correct, fps.toString(), e.topicAsked, e.topicCorrect);
+        }
+
+        private static String describe(long id, long seed, int n, long candidate, int startLevel, int asked, int answered,
+                                       int score, int level, BitSet correct, String fps, int[] topicAsked, int[] topicCorrect) {
+            return "#" + id + " seed " + seed + " n " + n + " candidate " + candidate + " start " + startLevel
+                + " asked " + asked + " answered " + answered + " score " + score + " level " + level
+                + " correct " + correct.get(0, answered) + " questions " + fps
+                + " topics " + Arrays.toString(topicAsked) + "/" + Arrays.toString(topicCorrect);
+        }
+    }
+
+    private static String describeOpen(Map<Long, Expected> open) {
+        StringBuilder sb = new StringBuilder();
+        for (Expected e : open.values()) sb.append(e.describe()).append('\n');
+        return sb.toString();
+    }
+
+    private static void checkJournal(Path dir) throws IOException {
+        Path file = dir.resolve("exams.journal");
+        Files.deleteIfExists(file);
+        SplittableRandom rnd = new SplittableRandom(1);
+        QuestionGenerator gen = new QuestionGenerator(new SplittableRandom(2), new QuestionGenerator.IdSequence(0));
+
+        // record boundaries, with the open exams and the next free session id at each
+        List<Long> ends = new ArrayList<>(List.of(0L));
+        List<String> states = new ArrayList<>(List.of(""));
+        List<Long> nextIds = new ArrayList<>(List.of(0L));
+        Map<Long, Expected> open = new LinkedHashMap<>();
+        long nextId = 0;
+
+        try (ExamJournal journal = ExamJournal.open(file, 1)) {
+            List<ExamSession> sessions = new ArrayList<>();
+            List<ExamJournal.Session> handles = new ArrayList<>();
+            List<Expected> expected = new ArrayList<>();
+            int started = 0;
+            while (started < 6 || !sessions.isEmpty()) {
+                if (started < 6 && (sessions.isEmpty() || rnd.nextInt(4) == 0)) { // START, interleaved with others
+                    int n = 2 + rnd.nextInt(4);
+                    long seed = rnd.nextLong();
+                    long candidate = rnd.nextBoolean() ? 0 : 1 + rnd.nextInt(1000);
+                    int startLevel = 1 + rnd.nextInt(3);
+                    ExamJournal.Session h = journal.begin(seed, n, 600_000, ExamJournal.POLICY_STREAK, candidate, startLevel);
+                    ExamSession s = new ExamSession(new AdaptivePolicy.Streak(gen), n, 600_000, null);
+                    s.addListener(h);
+                    Expected e = new Expected(h.id, seed, n, candidate, startLevel);
+                    sessions.add(s);
+                    handles.add(h);
+                    expected.add(e);
+                    open.put(h.id, e);
+                    nextId = Math.max(nextId, h.id + 1);
+                    started++;
+                } else {
+                    int i = rnd.nextInt(sessions.size());
+                    ExamSession s = sessions.get(i);
+                    Expected e = expected.get(i);
+                    AMCATSimulator.Question q = s.next();
+                    if (q == null) { // END; the last two exams are left open, as by a crash
+                        if (started < 6 || sessions.size() > 2) {
+                            handles.get(i).end(s);
+                            open.remove(e.id);
+                        }
+                        sessions.remove(i);
+                        handles.remove(i);
+                        expected.remove(i);
+                    } else { // QUESTION, then ANSWER
+                        int topic = Topic.of(q.difficulty, q.type).ordinal();
+                        e.fingerprints.add(q.fingerprint());
+                        ends.add(journal.size());
+                        states.add(describeOpen(open));
+                        nextIds.add(nextId);
+                        boolean right = rnd.nextInt(3) > 0;
+                        s.answer(right ? q.answer() : "?");
+                        e.correct.set(e.answered, right);
+                        e.topicAsked[topic]++;
+                        if (right) e.topicCorrect[topic]++;
+                        e.answered++;
+                        e.score = s.score();
+                        e.level = s.currentDifficulty();
+                    }
+                }
+                if (journal.size() != ends.get(ends.size() - 1)) {
+                    ends.add(journal.size());
+                    states.add(describeOpen(open));
+                    nextIds.add(nextId);
+                }
+            }
+        }
+        byte[] full = Files.readAllBytes(file);
+        if (full.length != ends.get(ends.size() - 1)) fail("journal: " + full.length + " bytes on disk, " + ends.get(ends.size() - 1) + " appended");
+
+        Path copy = dir.resolve("cut.journal");
+        int record = 0;
+        for (int length = 0; length <= full.length; length++) {
+            while (record + 1 < ends.size() && ends.get(record + 1) <= length) record++;
+            cut(full, length, -1, copy);
+            checkRecovered(copy, "journal cut at " + length, ends.get(record), states.get(record), nextIds.get(record));
+        }
+        for (int r = 1; r < ends.size(); r++) { // a bad byte in record r: replay keeps records before it
+            int start = (int)(long)ends.get(r - 1);
+            cut(full, full.length, start + 8 + rnd.nextInt((int)(ends.get(r) - start) - 8), copy);
+            checkRecovered(copy, "journal record " + r + " corrupt", start, states.get(r - 1), nextIds.get(r - 1));
+        }
+        Files.delete(copy);
+        Files.delete(file);
+        System.out.printf("ExamJournal: %d records in %d bytes, reopened at every cut and with each record corrupt%n",
+            ends.size() - 1, full.length);
+    }
+
+    private static void checkRecovered(Path file, String what, long validEnd, String state, long nextId) throws IOException {
+        try (ExamJournal journal = ExamJournal.open(file, 1)) {
+            StringBuilder sb = new StringBuilder();
+            for (ExamJournal.Interrupted e : journal.interrupted()) sb.append(Expected.describe(e)).append('\n');
+            if (!sb.toString().equals(state)) fail(what + ": recovered\n" + sb + "  expected\n" + state);
+            if (journal.size() != validEnd) fail(what + ": kept " + journal.size() + " bytes, expected " + validEnd);
+            if (Files.size(file) != validEnd) fail(what + ": file is " + Files.size(file) + " bytes, expected " + validEnd);
+            long id = journal.begin(0, 1, 1000, ExamJournal.POLICY_STREAK, 0, 2).id;
+            if (id != nextId) fail(what + ": new session got id " + id + ", expected " + nextId);
+        }
+    }
+
+    // ---- score store ----
+
+    private static String fields(ScoreStore.Record r) {
+        return r.timestamp + "/" + r.candidate + "/" + r.score + "/" + r.questions + "/" + r.mode + "/"
+            + r.finalDifficulty + "/" + r.paperSeed;
+    }
+
+    private static void checkScores(Path dir) throws IOException {
+        // a short history cut everywhere, then one just past a full index block cut around the block's end
+        int small = checkScores(dir, 40, 0, false);
+        int block = checkScores(dir, ScoreStore.BLOCK + 2, ScoreStore.BLOCK - 2, false);
+        block += checkScores(dir, ScoreStore.BLOCK + 2, ScoreStore.BLOCK - 2, true);
+        System.out.printf("ScoreStore: reopened at %d cuts of a short history and %d around a full index block%n",
+            small, block);
+    }
+
+    /** Cuts at every byte from record {@code firstCut} on; returns the number of cuts. */
+    private static int checkScores(Path dir, int records, int firstCut, boolean loseIndex) throws IOException {
+        Path file = dir.resolve("scores.dat");
+        Path index = Paths.get(file + ".idx");
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(index);
+        SplittableRandom rnd = new SplittableRandom(3);
+        List<ScoreStore.Record> written = new ArrayList<>();
+        long time = 1_700_000_000_000L;
+        try (ScoreStore store = ScoreStore.open(file)) {
+            for (int i = 0; i < records; i++) {
+                time += rnd.nextInt(100_000);
+                ScoreStore.Record r = new ScoreStore.Record(time, rnd.nextInt(5), rnd.nextInt(100), 1 + rnd.nextInt(30),
+                    ScoreStore.MODE_TIMED_EXAM, 1 + rnd.nextInt(3), rnd.nextLong());
+                store.append(r);
+                written.add(r);
+            }
+        }
+        byte[] full = Files.readAllBytes(file);
+        byte[] fullIndex = Files.readAllBytes(index);
+        Path copy = dir.resolve("cut.dat");
+        Path copyIndex = Paths.get(copy + ".idx");
+        int cuts = 0;
+        for (int length = ScoreStore.HEADER_SIZE + firstCut * ScoreStore.RECORD_SIZE; length <= full.length; length++, cuts++) {
+            cut(full, length, -1, copy);
+            cut(fullIndex, loseIndex ? 0 : fullIndex.length, -1, copyIndex);
+            int kept = (length - ScoreStore.HEADER_SIZE) / ScoreStore.RECORD_SIZE;
+            String what = "scores cut at " + length + (loseIndex ? " without index" : "");
+            try (ScoreStore store = ScoreStore.open(copy)) {
+                if (store.count() != kept) fail(what + ": " + store.count() + " records, expected " + kept);
+                if (Files.size(copy) != ScoreStore.HEADER_SIZE + (long)kept * ScoreStore.RECORD_SIZE) {
+                    fail(what + ": torn record left in the file");
+                }
+                List<ScoreStore.Record> all = new ArrayList<>();
+                store.scanDates(Long.MIN_VALUE, Long.MAX_VALUE, all::add);
+                for (int i = 0; i < kept; i++) {
+                    if (i >= all.size() || !fields(all.get(i)).equals(fields(written.get(i)))) {
+                        fail(what + ": record " + i + " reads back wrong");
+                        break;
+                    }
+                }
+                for (long candidate = 0; candidate < 5; candidate++) {
+                    int expected = 0;
+                    for (int i = 0; i < kept; i++) if (written.get(i).candidate == candidate) expected++;
+                    int found = store.byCandidate(candidate, Integer.MAX_VALUE).size();
+                    if (found != expected) fail(what + ": candidate " + candidate + " has " + found + " records, expected " + expected);
+                }
+                store.append(written.get(0));
+            }
+            try (ScoreStore store = ScoreStore.open(copy)) {
+                if (store.count() != kept + 1 || !fields(store.get(kept)).equals(fields(written.get(0)))) {
+                    fail(what + ": append after recovery was lost");
+                }
+            }
+        }
+        for (Path f : new Path[]{file, index, copy, copyIndex}) Files.delete(f);
+        return cuts;
+    }
+
+    // ---- response log ----
+
+    private static void checkResponses(Path dir) throws IOException {
+        Path file = dir.resolve("responses.log");
+        Files.deleteIfExists(file);
+        SplittableRandom rnd = new SplittableRandom(4);
+        List<Long> ends = new ArrayList<>();
+        List<Integer> rowsBefore = new ArrayList<>(); // rows in the complete groups up to each end
+        List<Integer> latencies = new ArrayList<>();
+        try (ResponseLog.Writer w = ResponseLog.Writer.open(file)) {
+            ends.add(Files.size(file));
+            rowsBefore.add(0);
+            for (int rows : new int[]{1, 7, 40, 3, 200}) {
+                for (int i = 0; i < rows; i++) {
+                    int latency = rnd.nextInt(60_000);
+                    w.record(rnd.nextInt(8), 1_700_000_000_000L + latencies.size() * 1000L, rnd.nextInt(30),
+                        QuestionTemplate.pack(rnd.nextInt(50), rnd.nextInt(50), 0, 0), rnd.nextInt(3), latency, rnd.nextInt(3) - 1);
+                    latencies.add(latency);
+                }
+                w.flush();
+                ends.add(Files.size(file));
+                rowsBefore.add(latencies.size());
+            }
+        }
+        byte[] full = Files.readAllBytes(file);
+        Path copy = dir.resolve("cut.log");
+        int group = 0;
+        for (int length = (int)(long)ends.get(0); length <= full.length; length++) {
+            while (group + 1 < ends.size() && ends.get(group + 1) <= length) group++;
+            cut(full, length, -1, copy);
+            String what = "response log cut at " + length;
+            int kept = rowsBefore.get(group);
+            try (ResponseLog.Writer w = ResponseLog.Writer.open(copy)) {
+                if (Files.size(copy) != ends.get(group)) fail(what + ": " + Files.size(copy) + " bytes kept, expected " + ends.get(group));
+                w.record(0, 0, 0, 0, 0, 12345, 0);
+            }
+            List<Integer> read = new ArrayList<>();
+            try (ResponseLog.Reader r = new ResponseLog.Reader(copy)) {
+                while (r.next(1 << ResponseLog.LATENCY)) {
+                    for (int i = 0; i < r.rows; i++) read.add(r.latency[i]);
+                }
+            }
+            List<Integer> expected = new ArrayList<>(latencies.subList(0, kept));
+            expected.add(12345);
+            if (!read.equals(expected)) fail(what + ": read back " + read.size() + " rows, expected " + expected.size());
+        }
+        Files.delete(copy);
+        Files.delete(file);
+        System.out.printf("ResponseLog: %d row groups in %d bytes, reopened and appended to at every cut%n",
+            ends.size() - 1, full.length);
+    }
+}
@@ -0,0 +1,655 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Columnar, compressed log of every answered question, for offline item
+ * and timing analysis
+ * - Writer.session() is an ExamSession.Listener: each graded answer becomes
+ *   one row (session, time, template, params, outcome, latency, level change)
+ * - Rows are buffered per column and written in row groups of up to
+ *   ROWS_PER_GROUP; each column is encoded for its shape (dictionary for
+ *   repeating sessions and items, zigzag-varint deltas for time, varints,
+ *   plain bytes) and then deflated on its own
+ * - A full group is swapped out under the lock and queued for a writer
+ *   thread that encodes and appends it, so sessions never wait for
+ *   compression; only when the writer is MAX_PENDING groups behind does the
+ *   session filling the next group wait (backpressure instead of unbounded
+ *   memory)
+ * - A write failure is reported once and disables the export; neither
+ *   answers nor close() fail because of it
+ * - Reader streams one row group at a time into reused primitive arrays,
+ *   inflating only the columns asked for (others are skipped unread), so
+ *   memory stays at one group however large the file
+ * - summarize() aggregates per topic and per template with column-at-a-time
+ *   loops over those arrays
+ * - open() keeps complete groups and truncates a torn last group, so a
+ *   crash loses at most the rows still in memory
+ *
+ * File : magic(int) version(int), then row groups until EOF (big-endian)
+ * Group: magic(int) rows(int) columnCount(byte), then per column
+ *        column(byte) rawLength(int) length(int) deflated bytes
+ * Columns (encoded before deflating):
+ *   SESSION  dictionary: size(varint) size x long, then codes(varint)
+ *   TIME     first value(varint zigzag), then deltas (varint zigzag), epoch millis
+ *   TEMPLATE one byte per row (QuestionTemplate.id)
+ *   PARAMS   dictionary, as SESSION
+ *   OUTCOME  one byte per row (ExamSession.Outcome ordinal)
+ *   LATENCY  varint millis
+ *   CHANGE   one byte per row (-1, 0, +1)
+ *
+ * Usage: java ResponseLog summary <file> [--templates]
+ *        java ResponseLog synth <file> <rows> [seed]   (synthetic responses for sizing)
+ */
+public class ResponseLog {
+
+    static final int MAGIC = 0x52535031; // "RSP1"
+    static final int GROUP_MAGIC = 0x52475250; // "RGRP"
+    static final int VERSION = 1;
+    static final int ROWS_PER_GROUP = 1 << 16;
+    static final int MAX_PENDING = 4; // full groups queued for the writer thread
+
+    static final int SESSION = 0, TIME = 1, TEMPLATE = 2, PARAMS = 3, OUTCOME = 4, LATENCY = 5, CHANGE = 6;
+    static final int COLUMNS = 7;
+    static final int ALL = (1 << COLUMNS) - 1;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int GROUP_HEADER = 9;
+    private static final int COLUMN_HEADER = 9;
+
+    /** One row group's values, column by column. */
+    static class Group {
+        final long[] session = new long[ROWS_PER_GROUP];
+        final long[] time = new long[ROWS_PER_GROUP];
+        final byte[] template = new byte[ROWS_PER_GROUP];
+        final long[] params = new long[ROWS_PER_GROUP];
+        final byte[] outcome = new byte[ROWS_PER_GROUP];
+        final int[] latency = new int[ROWS_PER_GROUP];
+        final byte[] change = new byte[ROWS_PER_GROUP];
+        int rows;
+
+        boolean add(long session, long time, int template, long params, int outcome, int latencyMillis, int change) {
+            int i = rows++;
+            this.session[i] = session;
+            this.time[i] = time;
+            this.template[i] = (byte)template;
+            this.params[i] = params;
+            this.outcome[i] = (byte)outcome;
+            this.latency[i] = latencyMillis;
+            this.change[i] = (byte)change;
+            return rows == ROWS_PER_GROUP;
+        }
+    }
+
+    // ---- writing ----
+
+    static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final Object writeLock = new Object(); // encoding and file appends
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final Sink raw = new Sink();
+        private final Sink out = new Sink();
+        private byte[] deflated = new byte[64 * 1024];
+        private final Thread writer;
+        private long rowsWritten;
+
+        // guarded by this
+        private Group filling = new Group();
+        private final ArrayDeque<Group> pending = new ArrayDeque<>(); // full groups, oldest first
+        private final ArrayDeque<Group> free = new ArrayDeque<>();
+        private boolean closed;
+        private IOException failure; // set once; the export is off from then on
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+            this.writer = new Thread(this::writeLoop, "response-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        /** Opens or creates the log, dropping a torn last row group. */
+        static Writer open(Path file) throws IOException {
+            FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (ch.size() == 0) {
+                    ch.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+                } else {
+                    long end = validEnd(ch);
+                    if (end < ch.size()) ch.truncate(end);
+                }
+                ch.position(ch.size());
+                return new Writer(ch);
+            } catch (IOException e) {
+                ch.close();
+                throw e;
+            }
+        }
+
+        /** Listener that logs one exam's answers under {@code sessionId} (e.g. its paper seed). */
+        ExamSession.Listener session(long sessionId) {
+            return new ExamSession.Listener() {
+                @Override
+                public void questionAsked(ExamSession s, AMCATSimulator.Question q) {
+                }
+
+                @Override
+                public void answered(ExamSession s, AMCATSimulator.Question q, ExamSession.Result r, long latencyNanos) {
+                    record(sessionId, System.currentTimeMillis(), q.template.id, q.params, r.outcome.ordinal(),
+                        (int)Math.min(Integer.MAX_VALUE, latencyNanos / 1_000_000), r.difficultyChange);
+                }
+
+                @Override
+                public void finished(ExamSession s) {
+                }
+            };
+        }
+
+        /** Adds one row; a full group is handed to the writer thread. Never throws: see failure. */
+        synchronized void record(long session, long timeMillis, int template, long params, int outcome, int latencyMillis,
+                                 int change) {
+            if (failure != null || closed) return;
+            if (!filling.add(session, timeMillis, template, params, outcome, latencyMillis, change)) return;
+            boolean interrupted = false;
+            while (pending.size() >= MAX_PENDING && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            if (failure != null) return;
+            pending.add(filling);
+            filling = free.isEmpty() ? new Group() : free.pop();
+            notifyAll();
+        }
+
+        private void writeLoop() {
+            while (true) {
+                Group g;
+                synchronized (this) {
+                    while (pending.isEmpty() && !closed) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (pending.isEmpty()) return; // closed and drained
+                    g = pending.peek();
+                }
+                try {
+                    write(g);
+                } catch (IOException e) {
+                    fail(e);
+                    return;
+                }
+                synchronized (this) {
+                    pending.poll();
+                    if (free.size() < 2) free.push(g);
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized void fail(IOException e) {
+            failure = e;
+            pending.clear();
+            notifyAll();
+            System.out.println("Error writing response log, export disabled: " + e.getMessage());
+        }
+
+        long rowsWritten() {
+            synchronized (writeLock) {
+                return rowsWritten;
+            }
+        }
+
+        /** Queues the partly filled group and waits until everything queued is written; the log stays appendable. */
+        synchronized void flush() throws IOException {
+            if (failure == null && filling.rows > 0) {
+                pending.add(filling);
+                filling = free.isEmpty() ? new Group() : free.pop();
+                notifyAll();
+            }
+            while (!pending.isEmpty() && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted flushing the response log");
+                }
+            }
+            if (failure != null) throw new IOException("Response log write failed", failure);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (failure == null) throw e; // (a write failure was reported when it happened)
+                }
+            } finally {
+                synchronized (this) {
+                    closed = true;
+                    notifyAll();
+                }
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (writeLock) {
+                    if (failure == null) channel.force(true);
+                    channel.close();
+                    deflater.end();
+                }
+            }
+        }
+
+        private void write(Group g) throws IOException {
+            synchronized (writeLock) {
+                out.reset();
+                out.putInt(GROUP_MAGIC).putInt(g.rows).put(COLUMNS);
+                for (int c = 0; c < COLUMNS; c++) {
+                    raw.reset();
+                    encode(g, c, raw);
+                    deflater.reset();
+                    deflater.setInput(raw.bytes, 0, raw.size);
+                    deflater.finish();
+                    int n = 0;
+                    while (!deflater.finished()) {
+                        if (n == deflated.length) deflated = Arrays.copyOf(deflated, n * 2);
+                        n += deflater.deflate(deflated, n, deflated.length - n);
+                    }
+                    out.put(c).putInt(raw.size).putInt(n).put(deflated, n);
+                }
+                ByteBuffer b = ByteBuffer.wrap(out.bytes, 0, out.size);
+                while (b.hasRemaining()) channel.write(b);
+                rowsWritten += g.rows;
+                g.rows = 0;
+            }
+        }
+
+        private static void encode(Group g, int column, Sink s) {
+            int n = g.rows;
+            switch (column) {
+                case SESSION: dictionary(g.session, n, s); break;
+                case TIME: {
+                    long prev = 0;
+                    for (int i = 0; i < n; i++) {
+                        s.putVarLong(zigzag(g.time[i] - prev));
+                        prev = g.time[i];
+                    }
+                    break;
+                }
+                case TEMPLATE: s.put(g.template, n); break;
+                case PARAMS: dictionary(g.params, n, s); break;
+                case OUTCOME: s.put(g.outcome, n); break;
+                case LATENCY: for (int i = 0; i < n; i++) s.putVarLong(g.latency[i]); break;
+                default: s.put(g.change, n);
+            }
+        }
+
+        /** Distinct values in first-seen order, then each row's code; repeats cost a byte or two. */
+        private static void dictionary(long[] values, int n, Sink s) {
+            HashMap<Long, Integer> codes = new HashMap<>();
+            int[] rowCodes = new int[n];
+            long[] dict = new long[Math.min(n, 1024)];
+            for (int i = 0; i < n; i++) {
+                Integer code = codes.get(values[i]);
+                if (code == null) {
+                    code = codes.size();
+                    codes.put(values[i], code);
+                    if (code == dict.length) dict = Arrays.copyOf(dict, code * 2);
+                    dict[code] = values[i];
+                }
+                rowCodes[i] = code;
+            }
+            s.putVarLong(codes.size());
+            for (int i = 0; i < codes.size(); i++) s.putLong(dict[i]);
+            for (int i = 0; i < n; i++) s.putVarLong(rowCodes[i]);
+        }
+    }
+
+    /** Offset just past the last complete row group. */
+    private static long validEnd(FileChannel ch) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(GROUP_HEADER);
+        if (ch.read(head, 0) < HEADER_SIZE || head.getInt(0) != MAGIC) throw new IOException("Not a response log file");
+        if (head.getInt(4) != VERSION) throw new IOException("Unsupported response log version " + head.getInt(4));
+        long pos = HEADER_SIZE, size = ch.size();
+        while (pos < size) {
+            long p = pos;
+            head.clear();
+            if (ch.read(head, p) < GROUP_HEADER || head.getInt(0) != GROUP_MAGIC) break;
+            int columns = head.get(8);
+            p += GROUP_HEADER;
+            for (int c = 0; c < columns && p <= size; c++) {
+                head.clear().limit(COLUMN_HEADER);
+                if (ch.read(head, p) < COLUMN_HEADER) {
+                    p = size + 1;
+                    break;
+                }
+                p += COLUMN_HEADER + head.getInt(5);
+            }
+            if (p > size) break;
+            pos = p;
+        }
+        return pos;
+    }
+
+    // ---- reading ----
+
+    /** Streams row groups; the column arrays are reused, so copy anything kept across next(). */
+    static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final Inflater inflater = new Inflater();
+        private byte[] compressed = new byte[64 * 1024];
+        private byte[] raw = new byte[64 * 1024];
+        private long[] dict = new long[1024];
+
+        final long[] session = new long[ROWS_PER_GROUP];
+        final long[] time = new long[ROWS_PER_GROUP];
+        final byte[] template = new byte[ROWS_PER_GROUP];
+        final long[] params = new long[ROWS_PER_GROUP];
+        final byte[] outcome = new byte[ROWS_PER_GROUP];
+        final int[] latency = new int[ROWS_PER_GROUP];
+        final byte[] change = new byte[ROWS_PER_GROUP];
+        int rows;
+
+        Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            if (in.readInt() != MAGIC) throw new IOException("Not a response log file");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported response log version " + version);
+        }
+
+        /** Loads the next row group, decoding only the columns in {@code columnMask}; false at the end. */
+        boolean next(int columnMask) throws IOException {
+            int magic;
+            try {
+                magic = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (magic != GROUP_MAGIC) throw new IOException("Corrupt response log: bad row group");
+            try {
+                rows = in.readInt();
+                int columns = in.readByte();
+                for (int c = 0; c < columns; c++) {
+                    int column = in.readByte();
+                    int rawLength = in.readInt();
+                    int length = in.readInt();
+                    if (column >= COLUMNS || (columnMask & (1 << column)) == 0) {
+                        in.skipNBytes(length);
+                        continue;
+                    }
+                    if (compressed.length < length) compressed = new byte[length];
+                    if (raw.length < rawLength) raw = new byte[rawLength];
+                    in.readFully(compressed, 0, length);
+                    inflater.reset();
+                    inflater.setInput(compressed, 0, length);
+                    if (inflater.inflate(raw, 0, rawLength) != rawLength) throw new IOException("Corrupt response log column");
+                    decode(column);
+                }
+            } catch (EOFException e) {
+                return false; // torn last group
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt response log column", e);
+            }
+            return true;
+        }
+
+        private void decode(int column) {
+            int n = rows;
+            int[] pos = {0};
+            switch (column) {
+                case SESSION: undictionary(session, n, pos); break;
+                case TIME: {
+                    long prev = 0;
+                    for (int i = 0; i < n; i++) time[i] = prev += unzigzag(varLong(pos));
+                    break;
+                }
+                case TEMPLATE: System.arraycopy(raw, 0, template, 0, n); break;
+                case PARAMS: undictionary(params, n, pos); break;
+                case OUTCOME: System.arraycopy(raw, 0, outcome, 0, n); break;
+                case LATENCY: for (int i = 0; i < n; i++) latency[i] = (int)varLong(pos); break;
+                default: System.arraycopy(raw, 0, change, 0, n);
+            }
+        }
+
+        private void undictionary(long[] dest, int n, int[] pos) {
+            int size = (int)varLong(pos);
+            if (dict.length < size) dict = new long[size];
+            ByteBuffer b = ByteBuffer.wrap(raw);
+            for (int i = 0; i < size; i++) dict[i] = b.getLong(pos[0] + i * 8);
+            pos[0] += size * 8;
+            for (int i = 0; i < n; i++) dest[i] = dict[(int)varLong(pos)];
+        }
+
+        private long varLong(int[] pos) {
+            long v = 0;
+            int shift = 0, p = pos[0];
+            byte b;
+            do {
+                b = raw[p++];
+                v |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            pos[0] = p;
+            return v;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+            inflater.end();
+        }
+    }
+
+    // ---- aggregation ----
+
+    /** Per-template counters; topics are rolled up from templates on output. */
+    static class Summary {
+        static final int BUCKETS = ExamMetrics.Histogram.index(Long.MAX_VALUE) + 1;
+
+        final long[] outcomes = new long[30 * 3]; // [template][Outcome ordinal]
+        final long[] changes = new long[30 * 3];  // [template][difficultyChange + 1]
+        final long[][] latency = new long[30][BUCKETS]; // ExamMetrics.Histogram buckets, millis
+        long rows;
+        long groups;
+
+        /**
+         * Adds one row group. Each pass reads one or two column arrays
+         * front to back and bumps a counter addressed by (template, value),
+         * with no per-row branching except the timeout filter.
+         */
+        void add(Reader r) {
+            int n = r.rows;
+            byte[] tpl = r.template, out = r.outcome, ch = r.change;
+            int[] lat = r.latency;
+            for (int i = 0; i < n; i++) outcomes[tpl[i] * 3 + out[i]]++;
+            for (int i = 0; i < n; i++) changes[tpl[i] * 3 + ch[i] + 1]++;
+            for (int i = 0; i < n; i++) {
+                if (out[i] != 2) latency[tpl[i]][ExamMetrics.Histogram.index(lat[i])]++;
+            }
+            rows += n;
+            groups++;
+        }
+
+        long count(int template) {
+            return outcomes[template * 3] + outcomes[template * 3 + 1] + outcomes[template * 3 + 2];
+        }
+
+        /** Upper bound (millis) of the bucket holding the q-quantile of the summed histograms. */
+        static long percentile(long[] hist, double q) {
+            long total = 0;
+            for (long c : hist) total += c;
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long)Math.ceil(q * total)), seen = 0;
+            for (int i = 0; i < hist.length; i++) {
+                seen += hist[i];
+                if (seen >= rank) return ExamMetrics.Histogram.upperBound(i);
+            }
+            return ExamMetrics.Histogram.upperBound(hist.length - 1);
+        }
+
+        String describe(boolean templates) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%-26s %12s %9s %9s %8s %8s %8s %8s%n", templates ? "template" : "topic",
+                "responses", "correct", "timeouts", "p50 s", "p90 s", "up", "down"));
+            int groupsOut = templates ? 30 : Topic.values().length;
+            for (int g = 0; g < groupsOut; g++) {
+                long n = 0, ok = 0, to = 0, u = 0, d = 0;
+                long[] hist = new long[BUCKETS];
+                for (int t = 0; t < 30; t++) {
+                    boolean member = templates ? t == g : Topic.of(t / 10 + 1, t % 10).ordinal() == g;
+                    if (!member) continue;
+                    n += count(t);
+                    ok += outcomes[t * 3];
+                    to += outcomes[t * 3 + 2];
+                    u += changes[t * 3 + 2];
+                    d += changes[t * 3];
+                    for (int b = 0; b < BUCKETS; b++) hist[b] += latency[t][b];
+                }
+                if (n == 0) continue;
+                String label = templates ? AMCATSimulator.diffName(g / 10 + 1) + "/" + g % 10 : Topic.values()[g].label;
+                sb.append(String.format("%-26s %12d %8.1f%% %8.1f%% %8.2f %8.2f %7.1f%% %7.1f%%%n", label, n,
+                    100.0 * ok / n, 100.0 * to / n, percentile(hist, 0.5) / 1e3, percentile(hist, 0.9) / 1e3,
+                    100.0 * u / n, 100.0 * d / n));
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Streams the whole file through a Summary, one row group in memory at a time. */
+    static Summary summarize(Path file) throws IOException {
+        Summary s = new Summary();
+        try (Reader r = new Reader(file)) {
+            int columns = 1 << TEMPLATE | 1 << OUTCOME | 1 << LATENCY | 1 << CHANGE;
+            while (r.next(columns)) s.add(r);
+        }
+        return s;
+    }
+
+    // ---- helpers ----
+
+    /** Growable byte buffer with the varint and big-endian puts the encoders need. */
+    private static class Sink {
+        byte[] bytes = new byte[64 * 1024];
+        int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+        }
+
+        Sink put(int b) {
+            ensure(1);
+            bytes[size++] = (byte)b;
+            return this;
+        }
+
+        Sink put(byte[] b, int n) {
+            ensure(n);
+            System.arraycopy(b, 0, bytes, size, n);
+            size += n;
+            return this;
+        }
+
+        Sink putInt(int v) {
+            ensure(4);
+            for (int s = 24; s >= 0; s -= 8) bytes[size++] = (byte)(v >>> s);
+            return this;
+        }
+
+        Sink putLong(long v) {
+            ensure(8);
+            for (int s = 56; s >= 0; s -= 8) bytes[size++] = (byte)(v >>> s);
+            return this;
+        }
+
+        void putVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte)(v | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte)v;
+        }
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** Synthetic exams (20 questions, streak rule, ability-dependent accuracy) straight into the writer. */
+    static void synth(Path file, long rows, long seed) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        long time = System.currentTimeMillis();
+        try (Writer w = Writer.open(file)) {
+            long written = 0;
+            while (written < rows) {
+                long session = rnd.nextLong();
+                double ability = rnd.nextGaussian();
+                int level = 2, streak = 0;
+                for (int q = 0; q < 20 && written < rows; q++, written++) {
+                    int type = rnd.nextInt(10);
+                    double p = 1 / (1 + Math.exp(-(ability - (level - 2) * 1.5)));
+                    int outcome = rnd.nextDouble() < 0.02 ? 2 : rnd.nextDouble() < p ? 0 : 1;
+                    int latency = outcome == 2 ? 60_000 : (int)(8000 * Math.exp(0.6 * rnd.nextGaussian()));
+                    int change = 0;
+                    streak = outcome == 0 ? Math.max(1, streak + 1) : Math.min(-1, streak - 1);
+                    if (streak == 2 && level < 3) change = 1;
+                    if (streak == -2 && level > 1) change = -1;
+                    if (Math.abs(streak) == 2) streak = 0;
+                    time += latency;
+                    w.record(session, time, (level - 1) * 10 + type, QuestionTemplate.pack(rnd.nextInt(20), rnd.nextInt(20), 0, 0), outcome, latency, change);
+                    level += change;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("summary")) {
+            Path file = Paths.get(args[1]);
+            long start = System.nanoTime();
+            Summary s = summarize(file);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.print(s.describe(false));
+            if (args.length > 2 && args[2].equals("--templates")) {
+                System.out.println();
+                System.out.print(s.describe(true));
+            }
+            System.out.printf("%d responses in %d row groups, %d bytes, scanned in %.2f s (%.1f M rows/s)%n",
+                s.rows, s.groups, Files.size(file), seconds, s.rows / seconds / 1e6);
+        } else if (args.length >= 3 && args[0].equals("synth")) {
+            Path file = Paths.get(args[1]);
+            long rows = Long.parseLong(args[2]);
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+            long start = System.nanoTime();
+            synth(file, rows, seed);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Wrote %d responses to %s (%d bytes, %.1f bytes/row) in %.2f s%n",
+                rows, file, Files.size(file), Files.size(file) / (double)Math.max(1, rows), seconds);
+        } else {
+            System.out.println("Usage: java ResponseLog summary <file> [--templates]");
+            System.out.println("       java ResponseLog synth <file> <rows> [seed]");
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Incremental statistics over exam results, updated as each score is recorded
+ * - Running mean/variance (Welford)
+ * - Exact p50/p90/p99 from dense count arrays: scores live in 0..MAX_SCORE,
+ *   so a count per score is both the quantile sketch and the histogram, and
+ *   memory stays fixed however many results arrive
+ * - The same counts per final difficulty reached
+ * - Bounded top-N leaderboard (min-heap)
+ * - rebuild() streams a ScoreStore once to recreate everything
+ */
+class ScoreStats {
+
+    static final int MAX_SCORE = 1000;   // 100 questions x 10 points
+    static final int MAX_LEVEL = 15;     // final difficulty levels tracked separately
+
+    private static class Counts {
+        final long[] bins = new long[MAX_SCORE + 2]; // last bin = above MAX_SCORE
+        long n;
+
+        void add(int score) {
+            bins[Math.max(0, Math.min(MAX_SCORE + 1, score))]++;
+            n++;
+        }
+
+        /** Smallest score with at least q of the results at or below it. */
+        int quantile(double q) {
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long)Math.ceil(q * n));
+            long seen = 0;
+            for (int s = 0; s < bins.length; s++) {
+                seen += bins[s];
+                if (seen >= rank) return s;
+            }
+            return MAX_SCORE + 1;
+        }
+    }
+
+    private final int leaderboardSize;
+    private final Counts all = new Counts();
+    private final Counts[] byLevel = new Counts[MAX_LEVEL + 1];
+    private final PriorityQueue<ScoreStore.Record> top;
+    private double mean;
+    private double m2;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    ScoreStats(int leaderboardSize) {
+        this.leaderboardSize = leaderboardSize;
+        // weakest entry at the head; on equal scores the newer result is evicted first
+        this.top = new PriorityQueue<>(leaderboardSize + 1, Comparator
+            .comparingInt((ScoreStore.Record r) -> r.score)
+            .thenComparing(r -> -r.timestamp));
+    }
+
+    static ScoreStats rebuild(ScoreStore store, int leaderboardSize) throws IOException {
+        ScoreStats stats = new ScoreStats(leaderboardSize);
+        store.scanAll(stats::record);
+        return stats;
+    }
+
+    synchronized void record(ScoreStore.Record r) {
+        int score = r.score;
+        all.add(score);
+        int level = Math.max(0, Math.min(MAX_LEVEL, r.finalDifficulty));
+        if (byLevel[level] == null) byLevel[level] = new Counts();
+        byLevel[level].add(score);
+
+        double delta = score - mean;
+        mean += delta / all.n;
+        m2 += delta * (score - mean);
+        min = Math.min(min, score);
+        max = Math.max(max, score);
+
+        if (leaderboardSize > 0) {
+            top.add(r);
+            if (top.size() > leaderboardSize) top.poll();
+        }
+    }
+
+    synchronized long count() { return all.n; }
+    synchronized double mean() { return mean; }
+    synchronized double stdDev() { return all.n < 2 ? 0 : Math.sqrt(m2 / (all.n - 1)); }
+    synchronized int min() { return all.n == 0 ? 0 : min; }
+    synchronized int max() { return all.n == 0 ? 0 : max; }
+
+    synchronized int percentile(double q) {
+        return all.quantile(q);
+    }
+
+    /** Quantile among results that ended at the given difficulty (0 = unknown/imported). */
+    synchronized int percentile(int level, double q) {
+        Counts c = byLevel[Math.max(0, Math.min(MAX_LEVEL, level))];
+        return c == null ? 0 : c.quantile(q);
+    }
+
+    synchronized long countAtLevel(int level) {
+        Counts c = byLevel[Math.max(0, Math.min(MAX_LEVEL, level))];
+        return c == null ? 0 : c.n;
+    }
+
+    /** Result counts per score bucket of {@code width} points, from 0 up to the highest score seen. */
+    synchronized long[] histogram(int width) {
+        int last = Math.min(MAX_SCORE + 1, max());
+        long[] out = new long[last / width + 1];
+        for (int s = 0; s <= last; s++) out[s / width] += all.bins[s];
+        return out;
+    }
+
+    /** Best results, highest score first. */
+    synchronized List<ScoreStore.Record> leaderboard() {
+        List<ScoreStore.Record> out = new ArrayList<>(top);
+        out.sort(top.comparator().reversed());
+        return out;
+    }
+
+    /** Short multi-line summary for the console. */
+    synchronized String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Results: %d  mean: %.1f  std dev: %.1f  min: %d  max: %d%n",
+            all.n, mean, stdDev(), min(), max()));
+        sb.append(String.format("Percentiles: p50=%d  p90=%d  p99=%d%n",
+            percentile(0.5), percentile(0.9), percentile(0.99)));
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            if (byLevel[level] == null) continue;
+            sb.append(String.format("  ended %-7s %6d results  p50=%d  p90=%d  p99=%d%n",
+                AMCATSimulator.diffName(level), byLevel[level].n, percentile(level, 0.5),
+                percentile(level, 0.9), percentile(level, 0.99)));
+        }
+        long[] hist = histogram(10);
+        long peak = 1;
+        for (long h : hist) peak = Math.max(peak, h);
+        for (int i = 0; i < hist.length; i++) {
+            if (hist[i] == 0) continue;
+            int bar = (int)Math.max(1, hist[i] * 40 / peak);
+            sb.append(String.format("  %4d-%-4d | %s %d%n", i * 10, i * 10 + 9, "#".repeat(bar), hist[i]));
+        }
+        List<ScoreStore.Record> best = leaderboard();
+        if (!best.isEmpty()) sb.append("Top ").append(best.size()).append(":").append(System.lineSeparator());
+        for (int i = 0; i < best.size(); i++) sb.append(String.format("  %2d. %s%n", i + 1, best.get(i)));
+        return sb.toString();
+    }
+}
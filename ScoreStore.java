@@ -0,0 +1,388 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Append-only score history with fixed-width binary records
+ * - Opening is O(1): the record count comes from the file size
+ * - Records are read lazily by number (newest pages for viewing, ranges
+ *   by date, all records of one candidate)
+ * - A sparse index keeps one entry per block of 1024 records holding the
+ *   block's min/max timestamp and a small Bloom filter of its candidates, so
+ *   date and candidate lookups only touch the blocks that can match. The
+ *   entry of the block still being filled is rebuilt from its records on open
+ * - importLegacy() converts the old scores.txt lines once; a marker file
+ *   holding the prior record count makes an interrupted import restartable
+ *
+ * scores.dat     : 16-byte header, then 32-byte records
+ *                  timestamp(long) candidate(long) score(int) questions(short)
+ *                  mode(byte) finalDifficulty(byte) paperSeed(long)
+ * scores.dat.idx : per block, minTs(long) maxTs(long) bloom(256 bytes)
+ */
+class ScoreStore implements Closeable {
+
+    static final int MODE_TIMED_EXAM = 0;
+    static final int MODE_IMPORTED = 1;
+    static final int MODE_RECOVERED = 2; // interrupted exam finalized from the journal
+
+    static final int MAGIC = 0x53435231; // "SCR1"
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 32;
+    static final int BLOCK = 1024;
+
+    private static final int BLOOM_BYTES = 256;
+    private static final int INDEX_ENTRY = 16 + BLOOM_BYTES;
+
+    static class Record {
+        final long timestamp;
+        final long candidate; // 0 = guest
+        final int score;
+        final int questions;
+        final int mode;
+        final int finalDifficulty;
+        final long paperSeed;
+
+        Record(long timestamp, long candidate, int score, int questions, int mode, int finalDifficulty, long paperSeed) {
+            this.timestamp = timestamp;
+            this.candidate = candidate;
+            this.score = score;
+            this.questions = questions;
+            this.mode = mode;
+            this.finalDifficulty = finalDifficulty;
+            this.paperSeed = paperSeed;
+        }
+
+        @Override
+        public String toString() {
+            String what = mode == MODE_IMPORTED ? "TimedExam" : "TimedExam (" + questions + " Qs, ended "
+                + AMCATSimulator.diffName(finalDifficulty) + (mode == MODE_RECOVERED ? ", interrupted" : "") + ")";
+            String who = candidate == 0 ? "" : " | candidate: " + candidate;
+            return String.format("%s | score: %d%s | date: %s", what, score, who, new Date(timestamp));
+        }
+    }
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private long count;
+
+    // index entry of the block currently being appended to
+    private long blockMin, blockMax;
+    private final byte[] blockBloom = new byte[BLOOM_BYTES];
+
+    private ScoreStore(FileChannel data, FileChannel index) throws IOException {
+        this.data = data;
+        this.index = index;
+        if (data.size() == 0) {
+            ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(RECORD_SIZE);
+            h.clear();
+            data.write(h, 0);
+        } else {
+            ByteBuffer h = ByteBuffer.allocate(8);
+            data.read(h, 0);
+            if (h.getInt(0) != MAGIC || h.getInt(4) != RECORD_SIZE) throw new IOException("Not a score store file");
+        }
+        // drop a torn trailing record left by a crash mid-append
+        count = (data.size() - HEADER_SIZE) / RECORD_SIZE;
+        data.truncate(HEADER_SIZE + count * RECORD_SIZE);
+        recoverIndexTail();
+    }
+
+    static ScoreStore open(Path file) throws IOException {
+        FileChannel data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index = null;
+        try {
+            index = FileChannel.open(Paths.get(file + ".idx"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new ScoreStore(data, index);
+        } catch (IOException e) {
+            data.close();
+            if (index != null) index.close();
+            throw e;
+        }
+    }
+
+    long count() {
+        return count;
+    }
+
+    void append(Record r) throws IOException {
+        appendAll(Collections.singletonList(r));
+    }
+
+    /** Appends records with a single write; the block index entry is written when a block fills. */
+    synchronized void appendAll(List<Record> records) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+        for (Record r : records) {
+            b.putLong(r.timestamp).putLong(r.candidate).putInt(r.score).putShort((short)r.questions)
+                .put((byte)r.mode).put((byte)r.finalDifficulty).putLong(r.paperSeed);
+        }
+        b.flip();
+        writeFully(data, b, HEADER_SIZE + count * RECORD_SIZE);
+
+        for (Record r : records) {
+            if (count % BLOCK == 0) {
+                blockMin = Long.MAX_VALUE;
+                blockMax = Long.MIN_VALUE;
+                Arrays.fill(blockBloom, (byte)0);
+            }
+            blockMin = Math.min(blockMin, r.timestamp);
+            blockMax = Math.max(blockMax, r.timestamp);
+            bloomAdd(blockBloom, r.candidate);
+            count++;
+            if (count % BLOCK == 0) writeIndexEntry(count / BLOCK - 1);
+        }
+    }
+
+    /** Flushes records and index to the storage device; the sync runs outside the lock, so appends go on meanwhile. */
+    void force() throws IOException {
+        synchronized (this) {
+            if (count % BLOCK != 0) writeIndexEntry(count / BLOCK);
+        }
+        data.force(false);
+        index.force(false);
+    }
+
+    Record get(long i) throws IOException {
+        if (i < 0 || i >= count) throw new IndexOutOfBoundsException("Record " + i + " of " + count);
+        ByteBuffer b = ByteBuffer.allocate(RECORD_SIZE);
+        readFully(data, b, HEADER_SIZE + i * RECORD_SIZE);
+        return decode(b, 0);
+    }
+
+    /** Up to {@code n} records, newest first, skipping the {@code skip} newest. */
+    List<Record> newest(long skip, int n) throws IOException {
+        List<Record> out = new ArrayList<>(n);
+        for (long i = count - 1 - skip; i >= 0 && out.size() < n; i--) out.add(get(i));
+        return out;
+    }
+
+    /** Records with from <= timestamp < to, in file order; only blocks whose range overlaps are read. */
+    void scanDates(long from, long to, Consumer<Record> action) throws IOException {
+        ByteBuffer e = ByteBuffer.allocate(INDEX_ENTRY);
+        for (long block = 0; block * BLOCK < count; block++) {
+            readIndexEntry(block, e);
+            if (e.getLong(8) < from || e.getLong(0) >= to) continue;
+            scanBlock(block, r -> {
+                if (r.timestamp >= from && r.timestamp < to) action.accept(r);
+            });
+        }
+    }
+
+    /** Up to {@code limit} records of one candidate, newest first; Bloom-negative blocks are skipped. */
+    List<Record> byCandidate(long candidate, int limit) throws IOException {
+        List<Record> out = new ArrayList<>();
+        ByteBuffer e = ByteBuffer.allocate(INDEX_ENTRY);
+        byte[] bloom = new byte[BLOOM_BYTES];
+        for (long block = (count - 1) / BLOCK; count > 0 && block >= 0 && out.size() < limit; block--) {
+            readIndexEntry(block, e);
+            e.position(16);
+            e.get(bloom);
+            if (!bloomMightContain(bloom, candidate)) continue;
+            List<Record> hits = new ArrayList<>();
+            scanBlock(block, r -> {
+                if (r.candidate == candidate) hits.add(r);
+            });
+            for (int i = hits.size() - 1; i >= 0 && out.size() < limit; i--) out.add(hits.get(i));
+        }
+        return out;
+    }
+
+    /** Streams every record once, in file order, through a bounded buffer. */
+    void scanAll(Consumer<Record> action) throws IOException {
+        for (long block = 0; block * BLOCK < count; block++) scanBlock(block, action);
+    }
+
+    private void scanBlock(long block, Consumer<Record> action) throws IOException {
+        long first = block * BLOCK;
+        int n = (int)Math.min(BLOCK, count - first);
+        ByteBuffer b = ByteBuffer.allocate(n * RECORD_SIZE);
+        readFully(data, b, HEADER_SIZE + first * RECORD_SIZE);
+        for (int i = 0; i < n; i++) action.accept(decode(b, i * RECORD_SIZE));
+    }
+
+    // ---- legacy import ----
+
+    /**
+     * Appends every "TimedExam | score: N | date: ..." line of the old text
+     * history, then renames the text file so it is only imported once.
+     * Crash-safe: the record count before the import is written (and synced)
+     * to a marker file first, so a restart after a partial import truncates
+     * its records and imports again instead of duplicating them.
+     * Returns the number of records imported.
+     */
+    long importLegacy(Path textFile) throws IOException {
+        Path marker = Paths.get(textFile + ".importing");
+        if (!Files.exists(textFile)) {
+            Files.deleteIfExists(marker); // crashed after the rename: the import is complete
+            return 0;
+        }
+        if (Files.exists(marker)) {
+            truncate(Long.parseLong(new String(Files.readAllBytes(marker), StandardCharsets.US_ASCII).trim()));
+        } else {
+            try (FileChannel m = FileChannel.open(marker, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                writeFully(m, ByteBuffer.wrap((count + "\n").getBytes(StandardCharsets.US_ASCII)), 0);
+                m.force(true);
+            }
+        }
+        SimpleDateFormat fmt = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+        long imported = 0;
+        List<Record> batch = new ArrayList<>(BLOCK);
+        try (BufferedReader br = Files.newBufferedReader(textFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                Record r = parseLegacy(line, fmt);
+                if (r == null) continue;
+                batch.add(r);
+                if (batch.size() == BLOCK) {
+                    appendAll(batch);
+                    imported += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        appendAll(batch);
+        imported += batch.size();
+        force();
+        Files.move(textFile, Paths.get(textFile + ".imported"), StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(marker);
+        return imported;
+    }
+
+    static Record parseLegacy(String line, SimpleDateFormat fmt) {
+        String[] parts = line.split("\\|");
+        if (parts.length < 3) return null;
+        String score = parts[1].trim();
+        String date = parts[2].trim();
+        if (!score.startsWith("score:") || !date.startsWith("date:")) return null;
+        try {
+            int s = Integer.parseInt(score.substring(6).trim());
+            long ts;
+            try {
+                ts = fmt.parse(date.substring(5).trim()).getTime();
+            } catch (ParseException e) {
+                ts = 0;
+            }
+            return new Record(ts, 0, s, 0, MODE_IMPORTED, 0, 0);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (count % BLOCK != 0) writeIndexEntry(count / BLOCK);
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    // ---- internals ----
+
+    /** Drops every record from number {@code n} on (an unfinished import). */
+    private synchronized void truncate(long n) throws IOException {
+        if (n < 0 || n > count) throw new IOException("Import marker says " + n + " records, store has " + count);
+        count = n;
+        data.truncate(HEADER_SIZE + count * RECORD_SIZE);
+        recoverIndexTail();
+        data.force(false);
+    }
+
+    /** Rebuilds the index entry of the last block if a crash left it behind the data file. */
+    private void recoverIndexTail() throws IOException {
+        long blocks = (count + BLOCK - 1) / BLOCK;
+        if (count == 0) {
+            index.truncate(0);
+            return;
+        }
+        long last = blocks - 1;
+        blockMin = Long.MAX_VALUE;
+        blockMax = Long.MIN_VALUE;
+        Arrays.fill(blockBloom, (byte)0);
+        scanBlock(last, r -> {
+            blockMin = Math.min(blockMin, r.timestamp);
+            blockMax = Math.max(blockMax, r.timestamp);
+            bloomAdd(blockBloom, r.candidate);
+        });
+        if (index.size() < last * INDEX_ENTRY) {
+            // more than the tail is missing: rebuild every entry once
+            for (long b = 0; b < last; b++) rebuildEntry(b);
+        }
+        writeIndexEntry(last);
+        index.truncate(blocks * INDEX_ENTRY);
+    }
+
+    private void rebuildEntry(long block) throws IOException {
+        long[] range = {Long.MAX_VALUE, Long.MIN_VALUE};
+        byte[] bloom = new byte[BLOOM_BYTES];
+        scanBlock(block, r -> {
+            range[0] = Math.min(range[0], r.timestamp);
+            range[1] = Math.max(range[1], r.timestamp);
+            bloomAdd(bloom, r.candidate);
+        });
+        ByteBuffer e = ByteBuffer.allocate(INDEX_ENTRY).putLong(range[0]).putLong(range[1]).put(bloom);
+        e.flip();
+        writeFully(index, e, block * INDEX_ENTRY);
+    }
+
+    /** Reads one index entry; the block still being filled is served from memory. */
+    private void readIndexEntry(long block, ByteBuffer e) throws IOException {
+        e.clear();
+        synchronized (this) {
+            if (count % BLOCK != 0 && block == count / BLOCK) {
+                e.putLong(blockMin).putLong(blockMax).put(blockBloom);
+                e.flip();
+                return;
+            }
+        }
+        readFully(index, e, block * INDEX_ENTRY);
+        e.flip();
+    }
+
+    private void writeIndexEntry(long block) throws IOException {
+        ByteBuffer e = ByteBuffer.allocate(INDEX_ENTRY).putLong(blockMin).putLong(blockMax).put(blockBloom);
+        e.flip();
+        writeFully(index, e, block * INDEX_ENTRY);
+    }
+
+    private static Record decode(ByteBuffer b, int off) {
+        return new Record(b.getLong(off), b.getLong(off + 8), b.getInt(off + 16), b.getShort(off + 20),
+            b.get(off + 22), b.get(off + 23), b.getLong(off + 24));
+    }
+
+    private static void bloomAdd(byte[] bloom, long candidate) {
+        long h = QuestionGenerator.mix64(candidate);
+        for (int k = 0; k < 3; k++, h >>>= 11) {
+            int bit = (int)(h & (BLOOM_BYTES * 8 - 1));
+            bloom[bit >>> 3] |= (byte)(1 << (bit & 7));
+        }
+    }
+
+    private static boolean bloomMightContain(byte[] bloom, long candidate) {
+        long h = QuestionGenerator.mix64(candidate);
+        for (int k = 0; k < 3; k++, h >>>= 11) {
+            int bit = (int)(h & (BLOOM_BYTES * 8 - 1));
+            if ((bloom[bit >>> 3] & (1 << (bit & 7))) == 0) return false;
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            int n = ch.read(b, pos);
+            if (n < 0) throw new EOFException("Unexpected end of score store");
+            pos += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+    }
+}
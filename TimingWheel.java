@@ -0,0 +1,308 @@
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One deadline scheduler for every exam in the process (question caps and
+ * exam ends alike) instead of one timed wait per candidate
+ * - Hierarchical timing wheel on System.nanoTime(): 4 levels of 256 slots,
+ *   so one 1 ms tick covers deadlines up to ~49 days; a timer sits in the
+ *   coarsest level whose slot it has not reached yet and moves down a level
+ *   when that slot comes round (each timer moves at most 3 times)
+ * - schedule() and cancel() are O(1): a slot is an intrusive doubly linked
+ *   list, so cancelling unlinks the node in place
+ * - A single daemon ticker thread expires timers; it parks until the next
+ *   occupied slot (at most one level-0 turn ahead), or indefinitely when
+ *   nothing is scheduled, so an idle wheel costs nothing
+ * - A timer fires on the first tick boundary at or after its deadline:
+ *   skew is at most one tick plus the ticker's wake-up latency, recorded
+ *   per expiry in skew()
+ * - Tasks run on the ticker thread and must only hand work off (offer to a
+ *   queue, wake a selector); they never run under the wheel's lock
+ *
+ * Usage: java TimingWheel [timers=100000] [spreadMillis=3000] [tickMicros=1000]
+ *        (schedule/cancel cost and expiry skew, against ScheduledThreadPoolExecutor)
+ */
+public final class TimingWheel implements Closeable {
+
+    static final TimingWheel SHARED = new TimingWheel(TimeUnit.MILLISECONDS.toNanos(1), "timing-wheel");
+
+    private static final int LEVELS = 4;
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+
+    /** A scheduled task; cancel() before it fires and it never runs. */
+    final class Timeout {
+        final long deadlineNanos;
+        private final long tick;
+        private final Runnable task;
+        private Timeout prev, next;
+        private int slot = -1; // index into slots while scheduled
+
+        private Timeout(long deadlineNanos, long tick, Runnable task) {
+            this.deadlineNanos = deadlineNanos;
+            this.tick = tick;
+            this.task = task;
+        }
+
+        /** True if the timer was still pending; false if it already fired or was cancelled. */
+        boolean cancel() {
+            return TimingWheel.this.cancel(this);
+        }
+    }
+
+    private final long tickNanos;
+    private final long origin;
+    private final Timeout[] slots = new Timeout[LEVELS * SLOTS]; // list heads, level-major
+    private final Thread ticker;
+    private final ExamMetrics.Histogram skew = new ExamMetrics.Histogram();
+    private final AtomicLong fired = new AtomicLong();
+
+    // guarded by this
+    private long tick;                     // every tick below this one has been processed
+    private long wakeTick = Long.MAX_VALUE; // tick the parked ticker will wake for
+    private int size;
+    private boolean closed;
+
+    TimingWheel(long tickNanos, String name) {
+        if (tickNanos <= 0) throw new IllegalArgumentException("tick must be positive");
+        this.tickNanos = tickNanos;
+        this.origin = System.nanoTime();
+        this.ticker = new Thread(this::run, name);
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /** Runs {@code task} on the ticker thread once {@code delayNanos} have passed. */
+    Timeout schedule(long delayNanos, Runnable task) {
+        long deadline = System.nanoTime() + Math.max(0, delayNanos);
+        long t = Math.floorDiv(deadline - origin + tickNanos - 1, tickNanos); // first boundary >= deadline
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Timing wheel closed");
+            if (size == 0) tick = Math.max(tick, currentTick()); // idle: nothing to sweep up to now
+            if (t < tick) t = tick;
+            if (t - tick >= 1L << (BITS * LEVELS)) {
+                throw new IllegalArgumentException("Delay beyond the wheel's range: " + delayNanos + " ns");
+            }
+            Timeout timeout = new Timeout(deadline, t, task);
+            link(timeout);
+            size++;
+            if (t < wakeTick) {
+                wakeTick = t;
+                LockSupport.unpark(ticker);
+            }
+            return timeout;
+        }
+    }
+
+    private synchronized boolean cancel(Timeout t) {
+        if (t.slot < 0) return false;
+        unlink(t);
+        size--;
+        return true;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    long tickNanos() { return tickNanos; }
+
+    /** Lateness of every expiry: firing time minus deadline, in nanoseconds. */
+    ExamMetrics.Histogram skew() { return skew; }
+
+    long fired() { return fired.get(); }
+
+    Thread ticker() { return ticker; }
+
+    /** Stops the ticker; timers still pending never fire. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        LockSupport.unpark(ticker);
+        try {
+            ticker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- wheel ----
+
+    private long currentTick() {
+        return (System.nanoTime() - origin) / tickNanos;
+    }
+
+    /**
+     * Puts {@code t} in the lowest level whose current turn also holds its tick;
+     * past the top level's turn it waits in the top level until its slot comes round again.
+     */
+    private void link(Timeout t) {
+        int level = 0;
+        while (level < LEVELS - 1 && (t.tick >>> (BITS * (level + 1))) != (tick >>> (BITS * (level + 1)))) level++;
+        int slot = level * SLOTS + (int)((t.tick >>> (BITS * level)) & MASK);
+        Timeout head = slots[slot];
+        t.slot = slot;
+        t.prev = null;
+        t.next = head;
+        if (head != null) head.prev = t;
+        slots[slot] = t;
+    }
+
+    private void unlink(Timeout t) {
+        if (t.prev != null) t.prev.next = t.next;
+        else slots[t.slot] = t.next;
+        if (t.next != null) t.next.prev = t.prev;
+        t.prev = t.next = null;
+        t.slot = -1;
+    }
+
+    /** Processes tick {@code tick}: cascades the higher levels due now, then collects level 0's slot. */
+    private void advance(ArrayList<Timeout> due) {
+        if ((tick & MASK) == 0) {
+            int top = 1;
+            while (top < LEVELS - 1 && (tick & ((1L << (BITS * (top + 1))) - 1)) == 0) top++;
+            for (int level = top; level >= 1; level--) {
+                int slot = level * SLOTS + (int)((tick >>> (BITS * level)) & MASK);
+                Timeout t = slots[slot];
+                slots[slot] = null;
+                while (t != null) {
+                    Timeout next = t.next;
+                    link(t);
+                    t = next;
+                }
+            }
+        }
+        int slot = (int)(tick & MASK);
+        for (Timeout t = slots[slot]; t != null; ) {
+            Timeout next = t.next;
+            t.prev = t.next = null;
+            t.slot = -1;
+            due.add(t);
+            size--;
+            t = next;
+        }
+        slots[slot] = null;
+        tick++;
+    }
+
+    /** Next tick with work: a pending cascade, an occupied level-0 slot in this turn, else the next turn. */
+    private long nextWakeTick() {
+        if ((tick & MASK) == 0) return tick; // the higher levels have not been brought down yet
+        long turnEnd = (tick | MASK) + 1;
+        for (long t = tick; t < turnEnd; t++) {
+            if (slots[(int)(t & MASK)] != null) return t;
+        }
+        return turnEnd;
+    }
+
+    private void run() {
+        ArrayList<Timeout> due = new ArrayList<>();
+        while (true) {
+            long parkUntil;
+            synchronized (this) {
+                if (closed) return;
+                long now = currentTick();
+                while (tick <= now && size > 0) advance(due);
+                if (size == 0) {
+                    tick = Math.max(tick, now + 1);
+                    wakeTick = Long.MAX_VALUE;
+                    parkUntil = 0;
+                } else {
+                    wakeTick = nextWakeTick();
+                    parkUntil = origin + wakeTick * tickNanos;
+                }
+            }
+            for (int i = 0; i < due.size(); i++) {
+                Timeout t = due.get(i);
+                skew.record(System.nanoTime() - t.deadlineNanos);
+                fired.incrementAndGet();
+                try {
+                    t.task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Timer task failed: " + e);
+                }
+            }
+            due.clear();
+            if (parkUntil == 0) LockSupport.park(this);
+            else LockSupport.parkNanos(this, parkUntil - System.nanoTime());
+        }
+    }
+
+    // ---- benchmark ----
+
+    public static void main(String[] args) throws Exception {
+        int timers = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long spread = TimeUnit.MILLISECONDS.toNanos(args.length > 1 ? Long.parseLong(args[1]) : 3000);
+        long tick = TimeUnit.MICROSECONDS.toNanos(args.length > 2 ? Long.parseLong(args[2]) : 1000);
+        System.out.printf("%,d active deadlines spread over %d ms; half are cancelled before firing%n%n",
+            timers, spread / 1_000_000);
+
+        try (TimingWheel wheel = new TimingWheel(tick, "bench-wheel")) {
+            ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+            long cpu0 = mx.getThreadCpuTime(wheel.ticker().threadId());
+            Timeout[] handles = new Timeout[timers];
+            long[] delays = delays(timers, spread);
+            CountDownLatch done = new CountDownLatch(timers - timers / 2);
+            Runnable count = done::countDown;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < timers; i++) handles[i] = wheel.schedule(delays[i], count);
+            long t1 = System.nanoTime();
+            for (int i = 0; i < timers; i += 2) handles[i].cancel();
+            long t2 = System.nanoTime();
+            done.await();
+            long cpu = mx.getThreadCpuTime(wheel.ticker().threadId()) - cpu0;
+            report("TimingWheel (" + tick / 1000 + " us tick)", timers, t1 - t0, t2 - t1, wheel.skew(), cpu);
+        }
+
+        ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(1);
+        stpe.setRemoveOnCancelPolicy(true);
+        try {
+            ScheduledFuture<?>[] handles = new ScheduledFuture<?>[timers];
+            long[] delays = delays(timers, spread);
+            ExamMetrics.Histogram skew = new ExamMetrics.Histogram();
+            CountDownLatch done = new CountDownLatch(timers - timers / 2);
+            long t0 = System.nanoTime();
+            for (int i = 0; i < timers; i++) {
+                long deadline = System.nanoTime() + delays[i];
+                handles[i] = stpe.schedule(() -> {
+                    skew.record(System.nanoTime() - deadline);
+                    done.countDown();
+                }, delays[i], TimeUnit.NANOSECONDS);
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < timers; i += 2) handles[i].cancel(false);
+            long t2 = System.nanoTime();
+            done.await();
+            report("ScheduledThreadPoolExecutor", timers, t1 - t0, t2 - t1, skew, -1);
+        } finally {
+            stpe.shutdownNow();
+        }
+    }
+
+    private static long[] delays(int n, long spread) {
+        Random rnd = new Random(42);
+        long[] d = new long[n];
+        for (int i = 0; i < n; i++) d[i] = spread / 2 + (long)(rnd.nextDouble() * (spread / 2));
+        return d;
+    }
+
+    private static void report(String name, int timers, long scheduleNanos, long cancelNanos,
+                               ExamMetrics.Histogram skew, long tickerCpuNanos) {
+        System.out.println(name);
+        System.out.printf("  schedule %7.1f ns/op   cancel %7.1f ns/op%n",
+            (double)scheduleNanos / timers, (double)cancelNanos / (timers - timers / 2));
+        System.out.printf("  skew     p50=%.3f ms  p99=%.3f ms  max=%.3f ms  (%,d fired)%n",
+            skew.percentile(0.50) / 1e6, skew.percentile(0.99) / 1e6, skew.max() / 1e6, skew.count());
+        if (tickerCpuNanos >= 0) System.out.printf("  ticker CPU %.1f ms%n", tickerCpuNanos / 1e6);
+        System.out.println();
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Syllabus topic of every generator type
+ * - of(difficulty, type) maps the 3 x 10 generator cases onto topics
+ */
+enum Topic {
+    ARITHMETIC("Arithmetic"),
+    ALGEBRA("Algebra"),
+    PERCENTAGES("Percentages"),
+    RATIOS("Ratios & Mixtures"),
+    SERIES("Series"),
+    TIME_SPEED_WORK("Time, Speed & Work"),
+    PROBABILITY("Permutation & Probability"),
+    CLOCKS_CALENDAR("Clocks & Calendar"),
+    REASONING("Reasoning"),
+    VERBAL("Verbal");
+
+    // [difficulty - 1][type]
+    private static final Topic[][] BY_TYPE = {
+        { ALGEBRA, SERIES, PERCENTAGES, ARITHMETIC, ARITHMETIC,
+          ARITHMETIC, REASONING, RATIOS, VERBAL, ARITHMETIC },
+        { TIME_SPEED_WORK, RATIOS, PERCENTAGES, TIME_SPEED_WORK, PERCENTAGES,
+          SERIES, PROBABILITY, PROBABILITY, REASONING, RATIOS },
+        { SERIES, TIME_SPEED_WORK, CLOCKS_CALENDAR, ALGEBRA, SERIES,
+          TIME_SPEED_WORK, CLOCKS_CALENDAR, REASONING, REASONING, ALGEBRA }
+    };
+
+    final String label;
+
+    Topic(String label) {
+        this.label = label;
+    }
+
+    static Topic of(int difficulty, int type) {
+        int d = Math.max(1, Math.min(3, difficulty));
+        return BY_TYPE[d - 1][type % 10];
+    }
+}
@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Score history ops (BenchmarkOps.SCORE_NAMES) against the history size
+ * - Each trial builds a temporary history of {@code lines} legacy lines and
+ *   imports it; importLegacy re-runs that whole conversion per op
+ * - 10M lines takes a few hundred MB of temp space and a minute to set up
+ *
+ * Run: java -jar target/benchmarks.jar ScoreHistoryBenchmark -p lines=1000,100000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ScoreHistoryBenchmark {
+
+    @Param({"importLegacy", "loadScoresFromFile", "saveScoresToFile", "scores.newestPage", "scores.byCandidate"})
+    public String op;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public long lines;
+
+    private LongSupplier body;
+    private Object handle;
+
+    @Setup
+    public void setUp() throws Exception {
+        handle = Class.forName("BenchmarkOps").getMethod("create", String.class, long.class).invoke(null, op, lines);
+        body = (LongSupplier)handle;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        ((AutoCloseable)handle).close();
+    }
+
+    @Benchmark
+    public long run() {
+        return body.getAsLong();
+    }
+}
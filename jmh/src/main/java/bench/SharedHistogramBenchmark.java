@@ -0,0 +1,40 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Every benchmark thread records into one ExamMetrics histogram, the way
+ * concurrent sessions do; compare -t 1 with -t (cores) for contention
+ *
+ * Run: java -jar target/benchmarks.jar SharedHistogramBenchmark -t 4
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class SharedHistogramBenchmark {
+
+    private LongSupplier record;
+    private Object handle;
+
+    @Setup
+    public void setUp() throws Exception {
+        handle = SimulatorBenchmarks.create("histogram.record.shared");
+        record = (LongSupplier)handle;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        ((AutoCloseable)handle).close();
+    }
+
+    @Benchmark
+    public long record() {
+        return record.getAsLong();
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH harness for the simulator's hot paths, one forked JVM per op
+ * - The ops come from BenchmarkOps (default package) by reflection
+ * - Average time per op in ns; add -prof gc for allocation per op
+ *
+ * Run: cd jmh && mvn -B package && java -jar target/benchmarks.jar SimulatorBenchmarks
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SimulatorBenchmarks {
+
+    // BenchmarkOps.NAMES (JMH needs them as constants); pick some with -p op=check/null,gcd
+    @Param({"generate/easy/0", "generate/easy/1", "generate/easy/2", "generate/easy/3", "generate/easy/4",
+            "generate/easy/5", "generate/easy/6", "generate/easy/7", "generate/easy/8", "generate/easy/9",
+            "generate/medium/0", "generate/medium/1", "generate/medium/2", "generate/medium/3", "generate/medium/4",
+            "generate/medium/5", "generate/medium/6", "generate/medium/7", "generate/medium/8", "generate/medium/9",
+            "generate/hard/0", "generate/hard/1", "generate/hard/2", "generate/hard/3", "generate/hard/4",
+            "generate/hard/5", "generate/hard/6", "generate/hard/7", "generate/hard/8", "generate/hard/9",
+            "check/typical", "check/padded", "check/tuple-spaced", "check/adversarial-long",
+            "check/adversarial-unicode", "check/null", "factorial", "gcd", "fingerprint", "dedup.sessionFilter",
+            "dedup.cohortFilter", "next/raw", "next/dedup20", "next/dedup20+cohort", "session20/no-metrics",
+            "session20/metrics", "histogram.record", "histogram.record.shared", "irt.select/100000",
+            "irt.select/1000000", "irt.session30/100000", "irt.session30/1000000", "timer.wheel.scheduleCancel",
+            "timer.stpe.scheduleCancel"})
+    public String op;
+
+    private LongSupplier body;
+    private Object handle;
+
+    @Setup
+    public void setUp() throws Exception {
+        handle = create(op);
+        body = (LongSupplier)handle;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        ((AutoCloseable)handle).close();
+    }
+
+    @Benchmark
+    public long run() {
+        return body.getAsLong();
+    }
+
+    static Object create(String name) throws Exception {
+        return Class.forName("BenchmarkOps").getMethod("create", String.class).invoke(null, name);
+    }
+}